@@ -0,0 +1,62 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+
+// The whole per-request authentication cost of JwtAuthenticationFilter.doFilterInternal, with mock servlet objects
+// and an in-memory UserDetailsService (so the numbers exclude the database).
+// tokenCache and claimsOnly switch the optional fast paths on and off.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean tokenCache;
+
+    @Param({"false", "true"})
+    public boolean claimsOnly;
+
+    private JwtAuthenticationFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setup() {
+        JwtService jwtService = new JwtService();
+        User user = User.builder().id(1L).email("bench@nia.com").password("password").role(Role.USER).tokenVersion(0).build();
+        VerifiedTokenCache verifiedTokenCache = tokenCache
+            ? new VerifiedTokenCache(10_000, Duration.ofMinutes(10))
+            : VerifiedTokenCache.disabled();
+        // the repositories are only used on startup and on a Bloom filter hit, neither happens here
+        filter = new JwtAuthenticationFilter(jwtService, username -> user, verifiedTokenCache,
+            new TokenVersionRegistry(null), new TokenRevocationService(null, null, 1_000), claimsOnly);
+        authorizationHeader = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public Object doFilterInternal() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/getMessage");
+        request.addHeader("Authorization", authorizationHeader);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilterInternal(request, response, new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
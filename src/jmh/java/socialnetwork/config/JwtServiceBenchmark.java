@@ -0,0 +1,84 @@
+package socialnetwork.config;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+
+// Throughput of the JwtService operations on the request path.
+// legacyThreeParses/verifyOnce compare the old per-request verification (three full parses, each one
+// rebuilding the parser and decoding the key) with the parse-once JwtService.verify path used by the filter.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET_KEY = "IElf6/ReCiW/tbNS34QBV1llO3s4C1AKatv0w40er6POnI8SJg1EijmRMPicU/Fb\n";
+
+    private JwtService jwtService;
+    private User user;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtService = new JwtService();
+        user = User.builder().id(1L).email("bench@nia.com").password("password").role(Role.USER).build();
+        token = jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtService.extractUsername(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtService.isTokenValid(token, user);
+    }
+
+    // What JwtAuthenticationFilter used to do: extractUsername, then isTokenValid,
+    // which extracted the username and the expiration again.
+    @Benchmark
+    public boolean legacyThreeParses() {
+        String username = legacyExtractAllClaims(token).getSubject();
+        boolean sameUser = legacyExtractAllClaims(token).getSubject().equals(user.getUsername());
+        boolean expired = legacyExtractAllClaims(token).getExpiration().before(new Date());
+        return username != null && sameUser && !expired;
+    }
+
+    @Benchmark
+    public boolean verifyOnce() {
+        return jwtService.verify(token)
+            .map(verifiedToken -> jwtService.isTokenValid(verifiedToken, user))
+            .orElse(false);
+    }
+
+    private static Claims legacyExtractAllClaims(String token) {
+        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
+        Key key = Keys.hmacShaKeyFor(keyBytes);
+        return Jwts.parserBuilder()
+            .setSigningKey(key)
+            .build()
+            .parseClaimsJws(token)
+            .getBody();
+    }
+}
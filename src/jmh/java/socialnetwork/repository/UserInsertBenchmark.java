@@ -0,0 +1,127 @@
+package socialnetwork.repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Insert throughput of app_user-shaped rows with the statements Hibernate sends for each id strategy:
+// "identity" is one INSERT ... RETURNING id per row (IDENTITY cannot be batched),
+// "pooled" fetches one nextval per 50 rows and sends the inserts as a JDBC batch (allocationSize = 50).
+// Needs a PostgreSQL database: BENCHMARK_JDBC_URL, BENCHMARK_JDBC_USER and BENCHMARK_JDBC_PASSWORD,
+// defaulting to the local database of application.properties. Only temporary tables are used.
+// Run with ./gradlew jmh -PjmhIncludes=UserInsertBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserInsertBenchmark {
+
+    static final int ROWS = 1000;
+    private static final int ALLOCATION_SIZE = 50;
+
+    @Param({"identity", "pooled"})
+    public String idGeneration;
+
+    private Connection connection;
+    private long counter;
+
+    @Setup
+    public void setup() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", environment("BENCHMARK_JDBC_USER", "postgres"));
+        properties.setProperty("password", environment("BENCHMARK_JDBC_PASSWORD", "postgres"));
+        properties.setProperty("reWriteBatchedInserts", "true");
+        connection = DriverManager.getConnection(
+            environment("BENCHMARK_JDBC_URL", "jdbc:postgresql://localhost:5432/social_network"), properties);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE bench_user_identity (id BIGSERIAL PRIMARY KEY, "
+                + "email VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role VARCHAR(255) NOT NULL)");
+            statement.execute("CREATE TEMPORARY SEQUENCE bench_user_seq INCREMENT BY " + ALLOCATION_SIZE);
+            statement.execute("CREATE TEMPORARY TABLE bench_user_pooled (id BIGINT PRIMARY KEY, "
+                + "email VARCHAR(255) NOT NULL UNIQUE, password VARCHAR(255) NOT NULL, role VARCHAR(255) NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void insertUsers() throws SQLException {
+        if ("identity".equals(idGeneration)) {
+            insertOneByOne();
+        } else {
+            insertBatched();
+        }
+        connection.commit();
+    }
+
+    private void insertOneByOne() throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO bench_user_identity (email, password, role) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                bindUser(insert, 1);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                }
+            }
+        }
+    }
+
+    private void insertBatched() throws SQLException {
+        try (PreparedStatement nextval = connection.prepareStatement("SELECT nextval('bench_user_seq')");
+                PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO bench_user_pooled (id, email, password, role) VALUES (?, ?, ?, ?)")) {
+            long nextId = 0;
+            long lastId = -1;
+            for (int i = 0; i < ROWS; i++) {
+                if (nextId > lastId) {
+                    // same as Hibernate's pooled optimizer: the fetched value is the last id of the block
+                    try (ResultSet resultSet = nextval.executeQuery()) {
+                        resultSet.next();
+                        lastId = resultSet.getLong(1);
+                    }
+                    nextId = lastId - ALLOCATION_SIZE + 1;
+                }
+                insert.setLong(1, nextId++);
+                bindUser(insert, 2);
+                insert.addBatch();
+                if ((i + 1) % ALLOCATION_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private void bindUser(PreparedStatement insert, int firstParameter) throws SQLException {
+        long n = counter++;
+        insert.setString(firstParameter, "bench" + n + "@nia.com");
+        insert.setString(firstParameter + 1, "$2a$10$abcdefghijklmnopqrstuuD4XyP0q6wM3N5Qe0mJ4Hq3mTjYqgQ9K");
+        insert.setString(firstParameter + 2, "USER");
+    }
+
+    private static String environment(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+}
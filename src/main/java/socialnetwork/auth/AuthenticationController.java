@@ -1,13 +1,16 @@
 package socialnetwork.auth;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import socialnetwork.exceptions.InvalidRefreshTokenException;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -24,5 +27,26 @@ public class AuthenticationController {
     public ResponseEntity<AuthenticationResponse> authenticate(@Valid @RequestBody AuthenticationRequest request){
         return ResponseEntity.ok(service.authenticate(request));
     }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<Object> refresh(@Valid @RequestBody RefreshTokenRequest request){
+        try {
+            return ResponseEntity.ok(service.refresh(request));
+        } catch (InvalidRefreshTokenException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Object> logout(@RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestBody(required = false) RefreshTokenRequest request){
+        if (authHeader == null || !authHeader.startsWith("Bearer ")){
+            return new ResponseEntity<>("Missing bearer token", HttpStatus.UNAUTHORIZED);
+        }
+        if (!service.logout(authHeader.substring(7), request)){
+            return new ResponseEntity<>("Invalid token", HttpStatus.UNAUTHORIZED);
+        }
+        return ResponseEntity.noContent().build();
+    }
 }
 
@@ -1,5 +1,6 @@
 package socialnetwork.auth;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -7,8 +8,10 @@ import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
 import socialnetwork.config.JwtService;
+import socialnetwork.config.TokenRevocationService;
 import socialnetwork.domain.Role;
 import socialnetwork.repository.UserRepository;
+import socialnetwork.service.UserChangedEvent;
 
 @Service
 @RequiredArgsConstructor
@@ -17,6 +20,9 @@ public class AuthenticationService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
     
     public AuthenticationResponse register(RegisterRequest request) {
         // Create a new user entity based on the registration request
@@ -26,9 +32,10 @@ public class AuthenticationService {
             .role(Role.USER)
             .build();
             repository.save(user);
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.CREATED, user.getId(), user.getEmail(), null));
             // Generate a JWT token for the registered user
             var jwtToken = jwtService.generateToken(user);
-        return AuthenticationResponse.builder().token(jwtToken).build();
+        return AuthenticationResponse.builder().token(jwtToken).refreshToken(refreshTokenService.issue(user)).build();
     }
 
 
@@ -42,7 +49,22 @@ public class AuthenticationService {
         var jwtToken = jwtService.generateToken(user);
 
         //Build and return the authentication response containing the JWT token
-        return AuthenticationResponse.builder().token(jwtToken).build();  
+        return AuthenticationResponse.builder().token(jwtToken).refreshToken(refreshTokenService.issue(user)).build();
+    }
+
+    // Issues a new access token from a refresh token, without checking the password again.
+    public AuthenticationResponse refresh(RefreshTokenRequest request) {
+        return refreshTokenService.refresh(request.getRefreshToken());
+    }
+
+    // Revokes the presented access token (and the refresh token, if one is given) before they expire.
+    public boolean logout(String accessToken, RefreshTokenRequest request) {
+        var verifiedToken = jwtService.verify(accessToken);
+        verifiedToken.ifPresent(tokenRevocationService::revoke);
+        if (request != null && request.getRefreshToken() != null) {
+            refreshTokenService.revoke(request.getRefreshToken());
+        }
+        return verifiedToken.isPresent();
     }
 
 }
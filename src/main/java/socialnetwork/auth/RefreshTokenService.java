@@ -0,0 +1,105 @@
+package socialnetwork.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.config.JwtService;
+import socialnetwork.domain.RefreshToken;
+import socialnetwork.domain.User;
+import socialnetwork.exceptions.InvalidRefreshTokenException;
+import socialnetwork.repository.RefreshTokenRepository;
+import socialnetwork.repository.UserRepository;
+
+// Issues and rotates refresh tokens, so a client whose access token expired gets a new one
+// with a hash lookup and an HMAC signature instead of a BCrypt password check.
+// Refresh tokens are random 256-bit values; only their SHA-256 is stored.
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtService jwtService;
+    private final Duration refreshTokenValidity;
+    private final Duration revokedTokenRetention;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+            JwtService jwtService, @Value("${socialnetwork.jwt.refresh-token-validity:P30D}") Duration refreshTokenValidity,
+            @Value("${socialnetwork.jwt.refresh-token-revoked-retention:P7D}") Duration revokedTokenRetention) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.jwtService = jwtService;
+        this.refreshTokenValidity = refreshTokenValidity;
+        this.revokedTokenRetention = revokedTokenRetention;
+    }
+
+    public String issue(User user) {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        refreshTokenRepository.save(RefreshToken.builder()
+            .userId(user.getId())
+            .tokenHash(hash(token))
+            .expiresAt(LocalDateTime.now().plus(refreshTokenValidity))
+            .revoked(false)
+            .build());
+        return token;
+    }
+
+    // Every refresh token can be used once: it is revoked and replaced by a new one.
+    // Presenting a token that was already used means it leaked, so all tokens of that user are revoked.
+    public AuthenticationResponse refresh(String token) {
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(token))
+            .orElseThrow(() -> new InvalidRefreshTokenException("Invalid refresh token."));
+        if (refreshToken.isExpired()) {
+            throw new InvalidRefreshTokenException("Refresh token expired.");
+        }
+        if (refreshToken.isRevoked() || refreshTokenRepository.revokeIfActive(refreshToken.getId()) == 0) {
+            log.warn("Reuse of a revoked refresh token for user {}", refreshToken.getUserId());
+            refreshTokenRepository.revokeAllByUserId(refreshToken.getUserId());
+            throw new InvalidRefreshTokenException("Refresh token was already used.");
+        }
+        User user = userRepository.findById(refreshToken.getUserId())
+            .orElseThrow(() -> new InvalidRefreshTokenException("User no longer exists."));
+        return AuthenticationResponse.builder()
+            .token(jwtService.generateToken(user))
+            .refreshToken(issue(user))
+            .build();
+    }
+
+    public void revoke(String token) {
+        refreshTokenRepository.findByTokenHash(hash(token))
+            .ifPresent(refreshToken -> refreshTokenRepository.revokeIfActive(refreshToken.getId()));
+    }
+
+    // Every refresh adds a row and revokes one, so expired rows and rows revoked longer than the retention are deleted.
+    // A token older than the retention that comes back is then only "invalid", without revoking its user's other tokens.
+    @Scheduled(fixedDelayString = "${socialnetwork.jwt.refresh-token-sweep-interval:PT1H}",
+        initialDelayString = "${socialnetwork.jwt.refresh-token-sweep-interval:PT1H}")
+    public void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = refreshTokenRepository.deleteExpiredOrRevokedBefore(now, now.minus(revokedTokenRetention));
+        log.debug("Purged {} expired or revoked refresh tokens", deleted);
+    }
+
+    private static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
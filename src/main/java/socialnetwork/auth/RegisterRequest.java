@@ -1,5 +1,7 @@
 package socialnetwork.auth;
 
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,6 +13,9 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class RegisterRequest {
     private String email;
+    // BCrypt only reads the first 72 bytes
+    @NotBlank(message = "Password cannot be blank")
+    @Size(min = 8, max = 72, message = "Password should have between 8 and 72 characters")
     private String password;
 
 }
@@ -1,31 +1,62 @@
 package socialnetwork.config;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import socialnetwork.repository.UserRepository;
+import socialnetwork.service.UserChangedEvent;
 
 @Slf4j
 @Configuration
+@EnableScheduling
 @RequiredArgsConstructor
 public class ApplicationConfig {
 
     private final UserRepository userRepository;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${socialnetwork.user-details-cache.enabled:true}")
+    private boolean userDetailsCacheEnabled;
+
+    @Value("${socialnetwork.user-details-cache.maximum-size:10000}")
+    private long userDetailsCacheMaximumSize;
 
+    @Value("${socialnetwork.user-details-cache.time-to-live:PT5M}")
+    private Duration userDetailsCacheTimeToLive;
+
+    // The email lookup is wrapped in a cache so authenticated requests don't hit app_user every time;
+    // UserService and AuthenticationService evict entries through UserChangedEvent.
     @Bean
     public UserDetailsService userDetailsService(){
-        return username -> userRepository.findByEmail(username)
+        UserDetailsService repositoryLookup = username -> userRepository.findByEmail(username)
         .orElseThrow(()-> new UsernameNotFoundException("User not Found!"));
+        if (!userDetailsCacheEnabled) {
+            return repositoryLookup;
+        }
+        CachingUserDetailsService cachingService = new CachingUserDetailsService(
+            repositoryLookup, userDetailsCacheMaximumSize, userDetailsCacheTimeToLive);
+        meterRegistry.ifAvailable(cachingService::bindTo);
+        return cachingService;
     }
 
     //This method encapsulates a DaoAuthenticationProvider configured with a custom UserDetailsService and a PasswordEncoder.
@@ -35,17 +66,53 @@ public class ApplicationConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
         authProvider.setPasswordEncoder(passwordEncoder());
+        // re-hashes stored passwords whose BCrypt cost differs from the calibrated one after a successful login
+        authProvider.setUserDetailsPasswordService(userDetailsPasswordService());
         return authProvider;
     }
 
+    @Bean
+    public UserDetailsPasswordService userDetailsPasswordService(){
+        return (user, newPassword) -> {
+            userRepository.updatePasswordByEmail(user.getUsername(), newPassword);
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.UPDATED, null, user.getUsername(), null));
+            return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+        };
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception{
         return config.getAuthenticationManager();
     }
 
-    @Bean
+    @Value("${socialnetwork.password-hashing.threads:2}")
+    private int passwordHashingThreads;
+
+    @Value("${socialnetwork.password-hashing.queue-capacity:50}")
+    private int passwordHashingQueueCapacity;
+
+    @Value("${socialnetwork.password-hashing.timeout:PT5S}")
+    private Duration passwordHashingTimeout;
+
+    @Value("${socialnetwork.password-hashing.budget:PT0.25S}")
+    private Duration passwordHashingBudget;
+
+    @Value("${socialnetwork.password-hashing.minimum-strength:10}")
+    private int passwordHashingMinimumStrength;
+
+    @Value("${socialnetwork.password-hashing.maximum-strength:14}")
+    private int passwordHashingMaximumStrength;
+
+    // The BCrypt cost is calibrated at startup against the latency budget.
+    // BCrypt runs on a small dedicated pool; register and authenticate get a 503 when it is saturated.
+    @Bean(destroyMethod = "shutdown")
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        CalibratedBCryptPasswordEncoder bcrypt = CalibratedBCryptPasswordEncoder.calibrate(
+            passwordHashingBudget, passwordHashingMinimumStrength, passwordHashingMaximumStrength);
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(bcrypt,
+            passwordHashingThreads, passwordHashingQueueCapacity, passwordHashingTimeout);
+        meterRegistry.ifAvailable(encoder::bindTo);
+        return encoder;
     }
 
     @Bean
@@ -62,8 +129,42 @@ public class ApplicationConfig {
         return service;
     }
 
+    // Verified tokens are cached so repeat requests with the same bearer token skip signature verification.
+    @Bean
+    public VerifiedTokenCache verifiedTokenCache(
+            @Value("${socialnetwork.jwt.token-cache.enabled:true}") boolean enabled,
+            @Value("${socialnetwork.jwt.token-cache.maximum-size:100000}") long maximumSize,
+            @Value("${socialnetwork.jwt.token-cache.maximum-ttl:PT10M}") Duration maximumTtl){
+        if (!enabled) {
+            return VerifiedTokenCache.disabled();
+        }
+        VerifiedTokenCache cache = new VerifiedTokenCache(maximumSize, maximumTtl);
+        meterRegistry.ifAvailable(cache::bindTo);
+        return cache;
+    }
+
+    // At most `account-attempts` logins per email from one client address and `address-attempts` per client address
+    // in each refill period.
+    @Bean
+    public LoginThrottle loginThrottle(
+            @Value("${socialnetwork.login-throttle.account-attempts:5}") int accountAttempts,
+            @Value("${socialnetwork.login-throttle.address-attempts:20}") int addressAttempts,
+            @Value("${socialnetwork.login-throttle.refill-period:PT1M}") Duration refillPeriod,
+            @Value("${socialnetwork.login-throttle.maximum-buckets:100000}") long maximumBuckets){
+        return new LoginThrottle(accountAttempts, addressAttempts, refillPeriod, maximumBuckets);
+    }
+
+    @Bean
+    public LoginThrottlingFilter loginThrottlingFilter(LoginThrottle loginThrottle, ObjectMapper objectMapper){
+        return new LoginThrottlingFilter(loginThrottle, objectMapper);
+    }
+
     @Bean
-    public JwtAuthenticationFilter jwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService){
-        return new JwtAuthenticationFilter(jwtService, userDetailsService);
+    public JwtAuthenticationFilter jwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService,
+            VerifiedTokenCache verifiedTokenCache, TokenVersionRegistry tokenVersionRegistry,
+            TokenRevocationService tokenRevocationService,
+            @Value("${socialnetwork.jwt.claims-only:false}") boolean claimsOnly){
+        return new JwtAuthenticationFilter(jwtService, userDetailsService, verifiedTokenCache, tokenVersionRegistry,
+            tokenRevocationService, claimsOnly);
     }
 }
@@ -0,0 +1,110 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import socialnetwork.exceptions.PasswordHashingUnavailableException;
+
+// Runs the (deliberately slow) password hashing on its own small pool instead of on the Tomcat threads.
+// The queue is bounded: when it is full the call fails straight away with PasswordHashingUnavailableException,
+// which is answered with 503, so a login burst cannot tie up every request thread on BCrypt.
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejectedCounter;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration timeout) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("auth.password-hashing.queue", executor, pool -> pool.getQueue().size())
+            .description("Password hashing tasks waiting for a thread")
+            .register(meterRegistry);
+        Gauge.builder("auth.password-hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+            .register(meterRegistry);
+        encodeTimer = Timer.builder("auth.password-hashing.latency").tag("operation", "encode").register(meterRegistry);
+        matchesTimer = Timer.builder("auth.password-hashing.latency").tag("operation", "matches").register(meterRegistry);
+        rejectedCounter = Counter.builder("auth.password-hashing.rejected").register(meterRegistry);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T execute(Callable<T> task, Timer timer) {
+        Callable<T> timedTask = timer == null ? task : () -> timer.recordCallable(task);
+        Future<T> future;
+        try {
+            future = executor.submit(timedTask);
+        } catch (RejectedExecutionException ex) {
+            if (rejectedCounter != null) {
+                rejectedCounter.increment();
+            }
+            throw new PasswordHashingUnavailableException("Too many password checks in progress, try again later.", ex);
+        }
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            throw new PasswordHashingUnavailableException("Password hashing timed out.", ex);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingUnavailableException("Interrupted while hashing the password.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package socialnetwork.config;
+
+// Published when invalidation messages from other nodes may have been missed
+// (the listener connection was lost): every local cache must drop all its entries.
+public class CacheFlushEvent {
+}
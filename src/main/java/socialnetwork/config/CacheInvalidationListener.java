@@ -0,0 +1,155 @@
+package socialnetwork.config;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.service.FriendshipChangedEvent;
+import socialnetwork.service.UserChangedEvent;
+
+// Receives the notifications sent by CacheInvalidationPublisher on the other nodes and republishes them
+// as local events marked remote, so every cache evicts exactly like it does for a local change.
+// LISTEN needs a session of its own for as long as the application runs, so the connection is opened
+// directly instead of being held out of the Hikari pool.
+// NOTIFY is not durable: whatever is sent while the connection is down is lost, so after every
+// reconnect a CacheFlushEvent makes all caches start over from the database.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "socialnetwork.cache-invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationListener implements SmartLifecycle {
+
+    private static final Duration MAXIMUM_BACKOFF = Duration.ofSeconds(30);
+
+    private final DataSourceProperties dataSourceProperties;
+    private final CacheInvalidationPublisher invalidationPublisher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final int pollTimeoutMillis;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public CacheInvalidationListener(DataSourceProperties dataSourceProperties,
+            CacheInvalidationPublisher invalidationPublisher, ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            @Value("${socialnetwork.cache-invalidation.poll-timeout:PT1S}") Duration pollTimeout) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.invalidationPublisher = invalidationPublisher;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.pollTimeoutMillis = (int) pollTimeout.toMillis();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        boolean connectedBefore = false;
+        long backoffMillis = 100;
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CacheInvalidationPublisher.CHANNEL);
+                }
+                log.info("Listening for cache invalidations on {}", CacheInvalidationPublisher.CHANNEL);
+                if (connectedBefore) {
+                    eventPublisher.publishEvent(new CacheFlushEvent());
+                }
+                connectedBefore = true;
+                backoffMillis = 100;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation connection lost, reconnecting in {} ms", backoffMillis, e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAXIMUM_BACKOFF.toMillis());
+            }
+        }
+    }
+
+    // a session of its own, outside the pool; replaced in tests
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+            dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    void dispatch(String payload) {
+        try {
+            JsonNode message = objectMapper.readTree(payload);
+            if (invalidationPublisher.getNodeId().equals(message.path("node").asText())) {
+                return;
+            }
+            switch (message.path("kind").asText()) {
+                case CacheInvalidationPublisher.USER -> eventPublisher.publishEvent(new UserChangedEvent(
+                    UserChangedEvent.Type.valueOf(message.path("type").asText()),
+                    longOrNull(message, "userId"),
+                    message.path("email").isTextual() ? message.get("email").asText() : null,
+                    message.path("tokenVersion").isNumber() ? message.get("tokenVersion").asInt() : null,
+                    true));
+                case CacheInvalidationPublisher.FRIENDSHIP -> eventPublisher.publishEvent(new FriendshipChangedEvent(
+                    FriendshipChangedEvent.Type.valueOf(message.path("type").asText()),
+                    longOrNull(message, "userId1"),
+                    longOrNull(message, "userId2"),
+                    true));
+                case CacheInvalidationPublisher.TOKEN -> eventPublisher.publishEvent(
+                    new TokenRevokedEvent(message.path("tokenId").asText(), true));
+                default -> log.warn("Ignoring unknown cache invalidation {}", payload);
+            }
+        } catch (Exception e) {
+            // one bad message must not stop the listener
+            log.warn("Could not handle cache invalidation {}", payload, e);
+        }
+    }
+
+    private static Long longOrNull(JsonNode message, String field) {
+        return message.path(field).isNumber() ? message.get(field).asLong() : null;
+    }
+}
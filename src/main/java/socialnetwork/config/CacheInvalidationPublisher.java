@@ -0,0 +1,99 @@
+package socialnetwork.config;
+
+import java.util.UUID;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.service.FriendshipChangedEvent;
+import socialnetwork.service.UserChangedEvent;
+
+// Forwards local change events to the other nodes with pg_notify on the cache_invalidation channel.
+// The notification is sent before the commit, inside the same transaction, so PostgreSQL delivers it
+// only if the change is committed and never before the new data is visible to the other nodes.
+// Changes made outside a transaction are sent right away.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "socialnetwork.cache-invalidation.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationPublisher {
+
+    static final String CHANNEL = "cache_invalidation";
+
+    static final String USER = "user";
+    static final String FRIENDSHIP = "friendship";
+    static final String TOKEN = "token";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    // lets the listener skip the notifications this node sent itself
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public CacheInvalidationPublisher(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        ObjectNode message = newMessage(USER, event.getType().name());
+        message.put("userId", event.getUserId());
+        message.put("email", event.getEmail());
+        message.put("tokenVersion", event.getTokenVersion());
+        send(message);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        ObjectNode message = newMessage(FRIENDSHIP, event.getType().name());
+        message.put("userId1", event.getUserId1());
+        message.put("userId2", event.getUserId2());
+        send(message);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onTokenRevoked(TokenRevokedEvent event) {
+        if (event.isRemote()) {
+            return;
+        }
+        ObjectNode message = newMessage(TOKEN, null);
+        message.put("tokenId", event.getTokenId());
+        send(message);
+    }
+
+    private ObjectNode newMessage(String kind, String type) {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("node", nodeId);
+        message.put("kind", kind);
+        message.put("type", type);
+        return message;
+    }
+
+    private void send(ObjectNode message) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cache invalidation message", e);
+        }
+        jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class, CHANNEL, payload);
+        log.debug("Sent cache invalidation {}", payload);
+    }
+}
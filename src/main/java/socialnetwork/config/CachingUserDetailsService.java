@@ -0,0 +1,96 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import socialnetwork.domain.User;
+import socialnetwork.service.UserChangedEvent;
+
+// Keeps recently loaded users in memory (keyed by normalized email) so authenticating a request
+// does not need a query on app_user every time.
+// Unknown emails are never cached, and entries are dropped whenever UserService reports a change.
+// A side index from user id to cache key lets a change known only by id evict its entry without a scan.
+public class CachingUserDetailsService implements UserDetailsService {
+
+    private final UserDetailsService delegate;
+    private final Cache<String, UserDetails> cache;
+    private final Map<Long, String> emailsById = new ConcurrentHashMap<>();
+
+    public CachingUserDetailsService(UserDetailsService delegate, long maximumSize, Duration timeToLive) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            // runs inside the eviction of the entry, so it cannot drop the index of a newer entry for the same key
+            .evictionListener((String email, UserDetails userDetails, RemovalCause cause) ->
+                unindex(email, userDetails))
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        // a UsernameNotFoundException thrown by the delegate propagates and nothing is cached
+        return cache.get(User.normalizeEmail(username), email -> {
+            UserDetails userDetails = delegate.loadUserByUsername(email);
+            if (userDetails instanceof User user && user.getId() != null) {
+                emailsById.put(user.getId(), email);
+            }
+            return userDetails;
+        });
+    }
+
+    public void evict(String email) {
+        String key = User.normalizeEmail(email);
+        unindex(key, cache.asMap().remove(key));
+    }
+
+    // The email may have changed or may be unknown to the caller, so entries are also found by id.
+    public void evictById(Long userId) {
+        String email = emailsById.remove(userId);
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    @EventListener(CacheFlushEvent.class)
+    public void invalidateAll() {
+        cache.invalidateAll();
+        emailsById.clear();
+    }
+
+    private void unindex(String email, UserDetails userDetails) {
+        if (userDetails instanceof User user && user.getId() != null) {
+            emailsById.remove(user.getId(), email);
+        }
+    }
+
+    // after the commit: evicting earlier lets a concurrent read cache the old row again for the whole TTL
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getEmail() != null) {
+            evict(event.getEmail());
+        }
+        if (event.getType() != UserChangedEvent.Type.CREATED && event.getUserId() != null) {
+            evictById(event.getUserId());
+        }
+    }
+
+    public void bindTo(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "auth.user-details");
+    }
+}
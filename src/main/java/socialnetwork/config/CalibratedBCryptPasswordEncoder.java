@@ -0,0 +1,71 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import lombok.extern.slf4j.Slf4j;
+
+// A BCryptPasswordEncoder whose cost is measured on the current machine at startup:
+// the highest cost whose hash still fits in the configured latency budget.
+// Stored hashes with any other cost are reported by upgradeEncoding, so DaoAuthenticationProvider
+// re-hashes them on the next successful login.
+@Slf4j
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int strength;
+
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    public static CalibratedBCryptPasswordEncoder calibrate(Duration budget, int minimumStrength, int maximumStrength) {
+        // warm up the JIT so the first measurement is not inflated
+        new BCryptPasswordEncoder(minimumStrength).encode(CALIBRATION_PASSWORD);
+
+        int chosenStrength = minimumStrength;
+        for (int strength = minimumStrength; strength <= maximumStrength; strength++) {
+            Duration elapsed = measure(strength);
+            log.info("BCrypt cost {} takes {} ms", strength, elapsed.toMillis());
+            if (elapsed.compareTo(budget) > 0) {
+                break;
+            }
+            chosenStrength = strength;
+        }
+        log.info("Using BCrypt cost {} for a budget of {} ms", chosenStrength, budget.toMillis());
+        return new CalibratedBCryptPasswordEncoder(chosenStrength);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    // Only hashes weaker than this node's cost are upgraded: nodes calibrated to different costs
+    // would otherwise re-hash each other's passwords back and forth, and a slower node would downgrade them.
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    // best of two runs, so a single GC pause does not push the cost down
+    private static Duration measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 2; run++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Duration.ofNanos(best);
+    }
+}
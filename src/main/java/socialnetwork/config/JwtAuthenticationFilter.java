@@ -1,6 +1,7 @@
 package socialnetwork.config;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,6 +16,8 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
 
 
 // @Component
@@ -25,6 +28,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter{
     // @Autowired
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenRevocationService tokenRevocationService;
+    // when true the principal is built from the token claims instead of being loaded from the database
+    private final boolean claimsOnly;
 
 
     //responsible for extracting, validating, and setting the authentication context based on JWTs in incoming requests.
@@ -37,19 +45,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter{
         throws ServletException, IOException {
             final String authHeader = request.getHeader("Authorization");
             final String jwt;
-            final String userEmail;
             if (authHeader == null || !authHeader.startsWith("Bearer ")){
                 logger.warn(authHeader);
                 filterChain.doFilter(request, response);
                 return;
             }
             jwt = authHeader.substring(7);
-            userEmail = jwtService.extractUsername(jwt);   // todo extract the userEmail from JWT token;
+            // the token is parsed and its signature checked at most once per request
+            Optional<VerifiedToken> verifiedToken = verify(jwt);
 
             //after JwtService
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null){
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-                if (jwtService.isTokenValid(jwt, userDetails)){
+            if (verifiedToken.isPresent() && verifiedToken.get().getUsername() != null
+                    && SecurityContextHolder.getContext().getAuthentication() == null
+                    && !tokenRevocationService.isRevoked(verifiedToken.get())){
+                UserDetails userDetails = loadUser(verifiedToken.get());
+                if (userDetails != null && jwtService.isTokenValid(verifiedToken.get(), userDetails)){
                     UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                         authenticationToken.setDetails(
@@ -61,4 +71,46 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter{
             filterChain.doFilter(request, response);
 
     }
+
+    // In claims-only mode a token carrying the user claims is trusted as long as its version is still current;
+    // older tokens without a user id fall back to the database lookup. A token with a user id but a missing
+    // or unknown role or version is invalid: null, so the request goes on unauthenticated.
+    private UserDetails loadUser(VerifiedToken verifiedToken) {
+        if (claimsOnly && verifiedToken.getUserId() != null) {
+            Role role = parseRole(verifiedToken.getRole());
+            if (role == null || verifiedToken.getUserVersion() == null
+                    || !tokenVersionRegistry.isCurrent(verifiedToken.getUserId(), verifiedToken.getUserVersion())) {
+                return null;
+            }
+            return User.builder()
+                .id(verifiedToken.getUserId())
+                .email(verifiedToken.getUsername())
+                .role(role)
+                .tokenVersion(verifiedToken.getUserVersion())
+                .build();
+        }
+        return this.userDetailsService.loadUserByUsername(verifiedToken.getUsername());
+    }
+
+    private static Role parseRole(String role) {
+        if (role == null) {
+            return null;
+        }
+        try {
+            return Role.valueOf(role);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    // A repeated token is served from the cache; otherwise it is verified and remembered until it expires.
+    private Optional<VerifiedToken> verify(String jwt) {
+        Optional<VerifiedToken> cached = verifiedTokenCache.get(jwt);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<VerifiedToken> verifiedToken = jwtService.verify(jwt);
+        verifiedToken.ifPresent(verifiedTokenCache::put);
+        return verifiedToken;
+    }
 }
@@ -4,21 +4,55 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 import org.springframework.security.core.userdetails.UserDetails;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import socialnetwork.domain.User;
 
 
 public class JwtService {
     // The secret key used for signing and verifying JWTs.
     private static final String SECRET_KEY = "IElf6/ReCiW/tbNS34QBV1llO3s4C1AKatv0w40er6POnI8SJg1EijmRMPicU/Fb\n";
 
+    // How long an access token stays valid.
+    public static final long TOKEN_VALIDITY_MS = 100 * 60 * 24 * 1000;
+
+    // Claims that let the filter authenticate a request without loading the user from the database.
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    public static final String USER_VERSION_CLAIM = "ver";
+
+    // The key and the parser are immutable and thread-safe, so they are built once instead of on every call.
+    private final Key signInKey;
+    private final JwtParser jwtParser;
+
+    public JwtService() {
+        this.signInKey = getSignInKey();
+        this.jwtParser = Jwts.parserBuilder()
+            .setSigningKey(signInKey)
+            .build();
+    }
+
+    // Parses and verifies the token exactly once. Returns empty if the signature is wrong,
+    // the token is malformed or it has expired, so callers never have to parse it again.
+    public Optional<VerifiedToken> verify(String token) {
+        try {
+            return Optional.of(new VerifiedToken(token, extractAllClaims(token)));
+        } catch (JwtException | IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
     // Extracts the username (subject) from the JWT token.
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);  // claim is a piece of information
@@ -34,42 +68,50 @@ public class JwtService {
         return generateToken(new HashMap<>(), userDetails);
     }
 
+    // Generates a JWT token that also carries the user id, role and token version,
+    // so it can be trusted in claims-only mode.
+    public String generateToken(User user){
+        Map<String, Object> claims = new HashMap<>();
+        if (user.getId() != null && user.getRole() != null) {
+            claims.put(USER_ID_CLAIM, user.getId());
+            claims.put(ROLE_CLAIM, user.getRole().name());
+            claims.put(USER_VERSION_CLAIM, user.getTokenVersion() == null ? 0 : user.getTokenVersion());
+        }
+        return generateToken(claims, user);
+    }
+
     // Generates a JWT token with additional claims using the provided UserDetails.
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails){
         return Jwts.builder().setClaims(extraClaims)
+            .setId(UUID.randomUUID().toString())  // jti, lets a single token be revoked
             .setSubject(userDetails.getUsername())
             .setIssuedAt(new Date(System.currentTimeMillis()))
-            .setExpiration(new Date(System.currentTimeMillis() + 100 * 60 * 24 * 1000))
-            .signWith(getSignInKey(),SignatureAlgorithm.HS256)
+            .setExpiration(new Date(System.currentTimeMillis() + TOKEN_VALIDITY_MS))
+            .signWith(signInKey,SignatureAlgorithm.HS256)
             .compact();
-        
+
     };
 
     // Validates whether a given token is valid.
     public boolean isTokenValid(String token, UserDetails userDetails){
-        final String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
-
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return verify(token)
+            .map(verifiedToken -> isTokenValid(verifiedToken, userDetails))
+            .orElse(false);
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // Validates an already verified token against the user, without parsing it again.
+    public boolean isTokenValid(VerifiedToken token, UserDetails userDetails){
+        return token.getUsername().equals(userDetails.getUsername()) && !token.isExpired();
     }
 
-    private Claims extractAllClaims(String token){ 
-        return Jwts.parserBuilder()
-        .setSigningKey(getSignInKey())
-        .build()
+    private Claims extractAllClaims(String token){
+        return jwtParser
         .parseClaimsJws(token)
         .getBody();
     }
 
     // Retrieves the signing key used for JWT verification. It decodes the base64-encoded secret key.
-    private Key getSignInKey(){
+    private static Key getSignInKey(){
         //takes a Base64-encoded string and returns the decoded byte array.  converting it back to its original binary representation
         byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
         return (Key) Keys.hmacShaKeyFor(keyBytes);
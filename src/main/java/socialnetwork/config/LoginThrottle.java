@@ -0,0 +1,62 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Limits login attempts per account and per client address before any password is hashed.
+// Account buckets are keyed by email and client address together: attempts from one address cannot lock
+// the owner of that email out from everywhere else, and the address buckets still cap guessing across accounts.
+// Buckets live in bounded Caffeine maps and are dropped once they have been idle for a refill period,
+// so an attacker rotating emails or addresses cannot grow memory without limit.
+public class LoginThrottle {
+
+    private final int accountCapacity;
+    private final int addressCapacity;
+    private final long refillPeriodNanos;
+    private final Cache<String, TokenBucket> accountBuckets;
+    private final Cache<String, TokenBucket> addressBuckets;
+    private final LongSupplier nanoClock;
+
+    public LoginThrottle(int accountCapacity, int addressCapacity, Duration refillPeriod, long maximumBuckets) {
+        this(accountCapacity, addressCapacity, refillPeriod, maximumBuckets, System::nanoTime);
+    }
+
+    // the buckets and their expiry both read the given clock, so tests can move time forward
+    LoginThrottle(int accountCapacity, int addressCapacity, Duration refillPeriod, long maximumBuckets,
+            LongSupplier nanoClock) {
+        this.accountCapacity = accountCapacity;
+        this.addressCapacity = addressCapacity;
+        this.refillPeriodNanos = refillPeriod.toNanos();
+        this.nanoClock = nanoClock;
+        this.accountBuckets = Caffeine.newBuilder()
+            .maximumSize(maximumBuckets)
+            .expireAfterAccess(refillPeriod)
+            .ticker(nanoClock::getAsLong)
+            .build();
+        this.addressBuckets = Caffeine.newBuilder()
+            .maximumSize(maximumBuckets)
+            .expireAfterAccess(refillPeriod)
+            .ticker(nanoClock::getAsLong)
+            .build();
+    }
+
+    public boolean tryAcquireForAddress(String clientAddress) {
+        return addressBuckets.get(clientAddress, key -> new TokenBucket(addressCapacity, refillPeriodNanos, nanoClock))
+            .tryConsume();
+    }
+
+    public boolean tryAcquireForAccount(String email, String clientAddress) {
+        String key = email.trim().toLowerCase(Locale.ROOT) + ' ' + clientAddress;
+        return accountBuckets.get(key, ignored -> new TokenBucket(accountCapacity, refillPeriodNanos, nanoClock))
+            .tryConsume();
+    }
+
+    // a conservative Retry-After value: one token is always back after this long
+    public long getRetryAfterSeconds() {
+        return Math.max(1, Duration.ofNanos(refillPeriodNanos / Math.min(accountCapacity, addressCapacity)).toSeconds());
+    }
+}
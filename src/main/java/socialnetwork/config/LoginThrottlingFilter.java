@@ -0,0 +1,136 @@
+package socialnetwork.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+// Runs in front of AuthenticationController and rejects login attempts over the per-address
+// or per-account limit with 429, before the request reaches BCrypt.
+@RequiredArgsConstructor
+public class LoginThrottlingFilter extends OncePerRequestFilter {
+
+    private static final String AUTHENTICATE_PATH = "/api/v1/auth/authenticate";
+    // login bodies are tiny; anything bigger is not buffered
+    private static final int MAX_BODY_BYTES = 8 * 1024;
+
+    private final LoginThrottle loginThrottle;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !("POST".equals(request.getMethod()) && AUTHENTICATE_PATH.equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(
+        @NonNull HttpServletRequest request,
+        @NonNull HttpServletResponse response,
+        @NonNull FilterChain filterChain)
+        throws ServletException, IOException {
+            // the address is checked first, so a flood from one client costs not even a JSON parse;
+            // behind a trusted proxy it is the client address taken from X-Forwarded-For (server.forward-headers-strategy)
+            if (!loginThrottle.tryAcquireForAddress(request.getRemoteAddr())) {
+                reject(response);
+                return;
+            }
+            byte[] body = request.getInputStream().readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                return;
+            }
+            String email = extractEmail(body);
+            if (email != null && !loginThrottle.tryAcquireForAccount(email, request.getRemoteAddr())) {
+                reject(response);
+                return;
+            }
+            filterChain.doFilter(new CachedBodyRequest(request, body), response);
+    }
+
+    private String extractEmail(byte[] body) {
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            JsonNode email = json == null ? null : json.get("email");
+            return email != null && email.isTextual() ? email.asText() : null;
+        } catch (IOException ex) {
+            // malformed JSON is left to the controller to reject
+            return null;
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(loginThrottle.getRetryAfterSeconds()));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many login attempts, try again later.");
+    }
+
+    // Replays the body that was already read to find the email.
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // the whole body is already in memory: it is available at once, and then all read
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException ex) {
+                        readListener.onError(ex);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import socialnetwork.domain.Role;
 
@@ -18,6 +19,7 @@ import socialnetwork.domain.Role;
 @RequiredArgsConstructor
 public class SecurityConfiguration {
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final LoginThrottlingFilter loginThrottlingFilter;
     private final AuthenticationProvider authenticationProvider;
     
     @Bean
@@ -25,15 +27,20 @@ public class SecurityConfiguration {
         httpSecurity
                 .csrf(csrf -> csrf.disable()).authorizeHttpRequests(  //Cross-Site Request Forgery) protection is a security feature that helps prevent attackers from executing malicious actions on behalf of an authenticated user
                     requests -> requests
+                    // error pages (429 from the login throttle, 503, ...) are rendered by a forward to /error
+                    .dispatcherTypeMatchers(DispatcherType.ERROR).permitAll()
                     .requestMatchers("/api/v1/auth/*")
                     .permitAll()   // For anything else, require authentication.
                     .requestMatchers("/api/users/getAllUsers").hasAuthority(Role.ADMIN.toString())
+                    .requestMatchers("/api/users/export").hasAuthority(Role.ADMIN.toString())
+                    .requestMatchers("/api/users/import").hasAuthority(Role.ADMIN.toString())
                     .anyRequest().authenticated()
                     )
                     
                 .sessionManagement(management -> management          //This configuration sets the session management behavior.
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authenticationProvider(authenticationProvider)                     // This interface is responsible for authenticating users based on their credentials
+                .addFilterBefore(loginThrottlingFilter, UsernamePasswordAuthenticationFilter.class)  // rejects login attempts over the limit before any password is hashed
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);   //indicates that JWT authentication should be processed before the default username-password authentication.
 
         return httpSecurity.build();
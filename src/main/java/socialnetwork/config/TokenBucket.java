@@ -0,0 +1,42 @@
+package socialnetwork.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Lock-free token bucket. Instead of storing a token count and a refill timestamp it keeps a single
+// "theoretical arrival time" (the GCRA form of a token bucket), so one compare-and-set updates it.
+public class TokenBucket {
+
+    // time needed to earn back one token
+    private final long nanosPerToken;
+    // how far ahead of "now" the arrival time may run, i.e. the burst size
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+    private final LongSupplier nanoClock;
+
+    public TokenBucket(int capacity, long refillPeriodNanos) {
+        this(capacity, refillPeriodNanos, System::nanoTime);
+    }
+
+    // the clock is replaceable so tests can move time forward
+    TokenBucket(int capacity, long refillPeriodNanos, LongSupplier nanoClock) {
+        this.nanosPerToken = refillPeriodNanos / capacity;
+        this.burstNanos = nanosPerToken * capacity;
+        this.nanoClock = nanoClock;
+        this.theoreticalArrival = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public boolean tryConsume() {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + nanosPerToken;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
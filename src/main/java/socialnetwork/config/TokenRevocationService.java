@@ -0,0 +1,100 @@
+package socialnetwork.config;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.domain.RevokedToken;
+import socialnetwork.repository.RevokedTokenRepository;
+
+// Answers "was this access token revoked?" for every authenticated request.
+// Almost every token is not revoked, and an in-memory Bloom filter proves that without touching the database;
+// only a probable hit (a revoked token or a false positive) is confirmed against revoked_token.
+// The filter is rebuilt from the table at startup and after every sweep; revocations made on other
+// nodes arrive through the cache invalidation bus, and the sweep catches anything the bus missed.
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int expectedRevocations;
+    private volatile BloomFilter<CharSequence> bloomFilter;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, ApplicationEventPublisher eventPublisher,
+            @Value("${socialnetwork.jwt.revocation.expected-revocations:100000}") int expectedRevocations) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.eventPublisher = eventPublisher;
+        this.expectedRevocations = expectedRevocations;
+        this.bloomFilter = newBloomFilter(expectedRevocations);
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        String tokenId = token.getTokenId();
+        if (tokenId == null || !bloomFilter.mightContain(tokenId)) {
+            return false;
+        }
+        return revokedTokenRepository.existsById(tokenId);
+    }
+
+    public synchronized void revoke(VerifiedToken token) {
+        if (token.getTokenId() == null) {
+            return;
+        }
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(token.getExpiration().toInstant(), ZoneId.systemDefault());
+        revokedTokenRepository.save(new RevokedToken(token.getTokenId(), expiresAt));
+        bloomFilter.put(token.getTokenId());
+        eventPublisher.publishEvent(new TokenRevokedEvent(token.getTokenId(), false));
+    }
+
+    // a revocation made on another node: the row is already in the table, only the filter needs it
+    @EventListener
+    public synchronized void onTokenRevoked(TokenRevokedEvent event) {
+        if (event.isRemote()) {
+            bloomFilter.put(event.getTokenId());
+        }
+    }
+
+    // the invalidation bus lost messages, so the filter is rebuilt from the table
+    @EventListener(CacheFlushEvent.class)
+    public void onCacheFlush() {
+        rebuild();
+    }
+
+    // Revocations are serialized with the rebuild so none is lost while the new filter is being filled.
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        List<String> tokenIds = revokedTokenRepository.findAllTokenIds();
+        BloomFilter<CharSequence> rebuilt = newBloomFilter(Math.max(expectedRevocations, tokenIds.size() * 2));
+        tokenIds.forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+        log.info("Loaded {} revoked tokens", tokenIds.size());
+    }
+
+    // A Bloom filter cannot forget entries, so expired rows are deleted and the filter is rebuilt from what is left.
+    @Scheduled(fixedDelayString = "${socialnetwork.jwt.revocation.sweep-interval:PT10M}",
+        initialDelayString = "${socialnetwork.jwt.revocation.sweep-interval:PT10M}")
+    public void sweep() {
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        log.debug("Purged {} expired revoked tokens", deleted);
+        rebuild();
+    }
+
+    private static BloomFilter<CharSequence> newBloomFilter(int expectedInsertions) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, FALSE_POSITIVE_PROBABILITY);
+    }
+}
@@ -0,0 +1,14 @@
+package socialnetwork.config;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+// Published when an access token is revoked, so the other nodes add it to their Bloom filter right away.
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TokenRevokedEvent {
+    private final String tokenId;
+    private final boolean remote;
+}
@@ -0,0 +1,79 @@
+package socialnetwork.config;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.repository.UserRepository;
+import socialnetwork.repository.UserTokenVersion;
+import socialnetwork.service.UserChangedEvent;
+
+// Remembers the lowest token version still accepted for users that changed recently,
+// which is what lets claims-only authentication reject tokens after a role change or a deletion.
+// A token can only be stale if its user changed while the token was alive, so entries are
+// kept for one token lifetime and users that never changed cost nothing.
+@Slf4j
+@Component
+public class TokenVersionRegistry {
+
+    // marks a deleted user: no version is recent enough
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Integer> minimumVersions = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMillis(JwtService.TOKEN_VALIDITY_MS))
+        .build();
+
+    public TokenVersionRegistry(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    // Rebuilt from the users whose token version was bumped within one token lifetime, and from the
+    // deleted_user tombstones for users deleted in that time. Reloaded as well when the invalidation bus reconnects,
+    // since bumps and deletions made on other nodes may have been missed.
+    @EventListener({ApplicationReadyEvent.class, CacheFlushEvent.class})
+    public void load() {
+        LocalDateTime since = tokenLifetimeAgo();
+        for (UserTokenVersion version : userRepository.findTokenVersionsChangedSince(since)) {
+            minimumVersions.put(version.getId(), version.getTokenVersion());
+        }
+        for (Long userId : userRepository.findUserIdsDeletedSince(since)) {
+            minimumVersions.put(userId, DELETED);
+        }
+        log.info("Loaded {} token versions", minimumVersions.estimatedSize());
+    }
+
+    // every token issued before a tombstone was written has expired by now
+    @Scheduled(fixedDelayString = "${socialnetwork.jwt.tombstone-sweep-interval:PT1H}",
+        initialDelayString = "${socialnetwork.jwt.tombstone-sweep-interval:PT1H}")
+    public void purgeTombstones() {
+        int deleted = userRepository.deleteTombstonesBefore(tokenLifetimeAgo());
+        log.debug("Purged {} deleted user tombstones", deleted);
+    }
+
+    private static LocalDateTime tokenLifetimeAgo() {
+        return LocalDateTime.now().minus(Duration.ofMillis(JwtService.TOKEN_VALIDITY_MS));
+    }
+
+    public boolean isCurrent(Long userId, Integer version) {
+        Integer minimum = minimumVersions.getIfPresent(userId);
+        return minimum == null || version >= minimum;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.DELETED) {
+            minimumVersions.put(event.getUserId(), DELETED);
+        } else if (event.getTokenVersion() != null) {
+            minimumVersions.asMap().merge(event.getUserId(), event.getTokenVersion(), Math::max);
+        }
+    }
+}
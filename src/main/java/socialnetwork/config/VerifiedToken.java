@@ -0,0 +1,53 @@
+package socialnetwork.config;
+
+import java.util.Date;
+
+import io.jsonwebtoken.Claims;
+import lombok.Getter;
+
+// A JWT whose signature has already been checked by JwtService.verify.
+// Holds the parsed claims so the filter can read them without verifying the token a second time.
+@Getter
+public class VerifiedToken {
+    private final String token;
+    private final Claims claims;
+
+    public VerifiedToken(String token, Claims claims) {
+        this.token = token;
+        this.claims = claims;
+    }
+
+    public String getUsername() {
+        return claims.getSubject();
+    }
+
+    public String getTokenId() {
+        return claims.getId();
+    }
+
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
+    public Long getUserId() {
+        return claims.get(JwtService.USER_ID_CLAIM, Long.class);
+    }
+
+    public String getRole() {
+        return claims.get(JwtService.ROLE_CLAIM, String.class);
+    }
+
+    public Integer getUserVersion() {
+        return claims.get(JwtService.USER_VERSION_CLAIM, Integer.class);
+    }
+
+    // Tokens issued before claims-only mode do not carry the user id, role and version.
+    public boolean hasUserClaims() {
+        return getUserId() != null && getRole() != null && getUserVersion() != null;
+    }
+
+    public boolean isExpired() {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,103 @@
+package socialnetwork.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Cache of tokens that already passed signature verification, so a client sending the same
+// bearer token again skips the HMAC check and the claims parsing.
+// Entries are keyed by a SHA-256 hash of the token (the raw token is never used as a key)
+// and never outlive the token's own "exp" claim.
+public class VerifiedTokenCache {
+
+    private final Cache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(long maximumSize, Duration maximumTtl) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new TokenExpiry(maximumTtl.toNanos()))
+            .recordStats()
+            .build();
+    }
+
+    // An instance that never stores anything, used when the cache is switched off.
+    public static VerifiedTokenCache disabled() {
+        return new VerifiedTokenCache(0, Duration.ZERO);
+    }
+
+    public Optional<VerifiedToken> get(String token) {
+        VerifiedToken verifiedToken = cache.getIfPresent(hash(token));
+        if (verifiedToken == null || verifiedToken.isExpired()) {
+            return Optional.empty();
+        }
+        return Optional.of(verifiedToken);
+    }
+
+    public void put(VerifiedToken verifiedToken) {
+        if (!verifiedToken.isExpired()) {
+            cache.put(hash(verifiedToken.getToken()), verifiedToken);
+        }
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(hash(token));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Publishes hit/miss/eviction counters under the "jwt.verified-tokens" cache name.
+    public void bindTo(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwt.verified-tokens");
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    // Each entry lives until the token expires, capped by the configured maximum TTL.
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+        private final long maximumTtlNanos;
+
+        TokenExpiry(long maximumTtlNanos) {
+            this.maximumTtlNanos = maximumTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            Date expiration = value.getExpiration();
+            if (expiration == null) {
+                return maximumTtlNanos;
+            }
+            long remainingNanos = Duration.ofMillis(expiration.getTime() - System.currentTimeMillis()).toNanos();
+            return Math.max(0, Math.min(maximumTtlNanos, remainingNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,20 +1,28 @@
 package socialnetwork.controller;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 // import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
@@ -22,11 +30,21 @@ import jakarta.validation.constraints.NotBlank;
 import lombok.extern.slf4j.Slf4j;
 import socialnetwork.domain.Friendship;
 import socialnetwork.domain.User;
+import socialnetwork.dto.UserImportResult;
+import socialnetwork.dto.UserPage;
+import socialnetwork.dto.UserResponse;
+import socialnetwork.dto.UserUpdateRequest;
 import socialnetwork.exceptions.ExistingFriendshipException;
+import socialnetwork.exceptions.InvalidCursorException;
+import socialnetwork.exceptions.InvalidImportException;
 import socialnetwork.exceptions.NotExistingFriendshipException;
+import socialnetwork.exceptions.RecommendationsUnavailableException;
 import socialnetwork.exceptions.SameUserFriendshipException;
+import socialnetwork.exceptions.StaleUserVersionException;
 import socialnetwork.exceptions.UserNotFoundException;
 import socialnetwork.exceptions.WrongUserException;
+import socialnetwork.service.UserExportService;
+import socialnetwork.service.UserImportService;
 import socialnetwork.service.UserService;
 
 @Slf4j
@@ -36,9 +54,13 @@ public class UserController {
 
     @Autowired 
     private final UserService userService;
+    private final UserExportService userExportService;
+    private final UserImportService userImportService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserExportService userExportService, UserImportService userImportService) {
         this.userService = userService;
+        this.userExportService = userExportService;
+        this.userImportService = userImportService;
     }
 
     @GetMapping(value = "/getMessage")
@@ -46,18 +68,44 @@ public class UserController {
         return ResponseEntity.ok("Hi!");
     }
 
+    // Paginated by id: pass the nextCursor of the previous page to get the following one.
     @GetMapping(value = "/getAllUsers")
     // @RolesAllowed({Role.ADMIN.toString()});
-    public ResponseEntity<List<User>> getAllUsers() {
-        log.debug("This is a debug message.");
-        log.info("This is an info message.");
-        log.warn("This is a warning message.");
-        log.error("This is an error message.");
-        
-        log.info("Before calling userService.getAllUsers()");
-        List<User> users = userService.getAllUsers();
-        log.info("After calling userService.getAllUsers()");
-        return new ResponseEntity<>(users, HttpStatus.OK);
+    public ResponseEntity<Object> getAllUsers(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        try {
+            UserPage<UserResponse> users = userService.getUsersPage(cursor, size, includeTotal);
+            return new ResponseEntity<>(users, HttpStatus.OK);
+        } catch (InvalidCursorException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Admin export of every user as newline-delimited JSON, streamed as it is read from the database.
+    // Runs as an async request, limited by spring.mvc.async.request-timeout.
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = outputStream -> userExportService.exportUsers(outputStream);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+
+    // Admin bulk import of a CSV (header with email, password and optional role) or NDJSON upload.
+    // Valid rows are inserted in one go; the others are listed in the response with their line number.
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<Object> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType("text/csv"))
+            ? UserImportService.Format.CSV
+            : UserImportService.Format.NDJSON;
+        try {
+            UserImportResult result = userImportService.importUsers(body, format);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (InvalidImportException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
     }
 
     @PostMapping(value = "/signup", consumes = "application/json")
@@ -68,12 +116,12 @@ public class UserController {
 
     }
 
+    // answered with the deleted user, as returned by the DELETE itself
     @DeleteMapping(value = "/deleteUser/{userId}")
     public ResponseEntity<Object> deleteUser(@PathVariable Long userId) {
-        Optional<User> userOptional = userService.getUserByID(userId);
-        if (userOptional.isPresent()){
-            userService.deleteUser(userId);
-            return new ResponseEntity<>(userOptional, HttpStatus.OK);
+        Optional<UserResponse> deletedUser = userService.deleteUser(userId);
+        if (deletedUser.isPresent()){
+            return new ResponseEntity<>(deletedUser.get(), HttpStatus.OK);
         }
         else{
             return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
@@ -82,29 +130,52 @@ public class UserController {
 
     @GetMapping(value = "/getUserById/{userId}")
     public ResponseEntity<Object> getUserById(@PathVariable Long userId){ 
-        Optional<User> userOptional = userService.getUserByID(userId);
+        Optional<UserResponse> userOptional = userService.getUserResponseById(userId);
         if (userOptional.isPresent()) {
-            User user = userOptional.get();
+            UserResponse user = userOptional.get();
             return new ResponseEntity<>(user, HttpStatus.OK);
         } else {
             return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
         }
     }
     
+    // Partial update: only the fields present in the body change.
+    // The body carries the version last read; 409 when the user changed since, 404 when it does not exist.
+    @PatchMapping(value = "/updateUser/{userId}", consumes = "application/json")
+    public ResponseEntity<Object> patchUser(@PathVariable Long userId, @Valid @RequestBody UserUpdateRequest request){
+        return updateUser(userId, request);
+    }
+
+    // Same single-statement update as PATCH, with the whole user as body.
+    // The version is optional here so existing clients keep working: with it the update is checked like PATCH,
+    // without it the last write wins, as PUT always did.
     @PutMapping(value = "/updateUser/{userId}", consumes = "application/json")
     public ResponseEntity<Object> updateUser(@PathVariable Long userId, @Valid @RequestBody User user){
-        Optional<User> userOptional = userService.getUserByID(userId);
-        if (userOptional.isPresent()) {
-            userService.updateUser(user);
-            return new ResponseEntity<>(user, HttpStatus.OK);
-        } else {
+        UserUpdateRequest request = UserUpdateRequest.builder()
+            .version(user.getVersion())
+            .email(user.getEmail())
+            .password(user.getPassword())
+            .role(user.getRole())
+            .build();
+        return updateUser(userId, request);
+    }
+
+    private ResponseEntity<Object> updateUser(Long userId, UserUpdateRequest request) {
+        try {
+            UserResponse updatedUser = userService.updateUser(userId, request);
+            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+        } catch (UserNotFoundException ex) {
             return new ResponseEntity<>("User not found", HttpStatus.NOT_FOUND);
+        } catch (StaleUserVersionException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+        } catch (DataIntegrityViolationException ex) {
+            return new ResponseEntity<>("Email already in use", HttpStatus.CONFLICT);
         }
     }
 
     @GetMapping(value = "/getUserByEmail/{email}")
     public ResponseEntity<Object> getUserByEmail(@PathVariable @NotBlank @Email String email){
-        Optional<User> optionalUser = userService.getUserByEmail(email);
+        Optional<UserResponse> optionalUser = userService.getUserResponseByEmail(email);
 
         if (optionalUser.isPresent()){
             return new ResponseEntity<>(optionalUser.get(), HttpStatus.OK);
@@ -118,7 +189,7 @@ public class UserController {
     @DeleteMapping(value = "/deleteUserWithError/{userId}")
     public ResponseEntity<Object> deleteUserWithError(@PathVariable Long userId){
         try {
-            Optional<User> deletedUser = userService.deleteUserByIdWithError(userId);
+            UserResponse deletedUser = userService.deleteUserByIdWithError(userId);
             return new ResponseEntity<>("User deleted succesfully: " + deletedUser, HttpStatus.OK);
         } catch (WrongUserException ex) {
             log.warn("Warn message ", ex);
@@ -168,4 +239,44 @@ public class UserController {
             return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
-}
\ No newline at end of file
+
+    // only the ids, which is all most clients need and what the friend graph index serves without a query
+    @GetMapping("/{userId}/getFriendIds")
+    public ResponseEntity<Object> getFriendIds(@PathVariable Long userId){
+        try {
+            return new ResponseEntity<>(userService.getFriendIds(userId), HttpStatus.OK);
+        } catch (UserNotFoundException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping("/{userId1}/mutualFriends/{userId2}")
+    public ResponseEntity<Object> getMutualFriends(@PathVariable Long userId1, @PathVariable Long userId2){
+        try {
+            return new ResponseEntity<>(userService.getMutualFriendIds(userId1, userId2), HttpStatus.OK);
+        } catch (UserNotFoundException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping("/{userId1}/mutualFriends/{userId2}/count")
+    public ResponseEntity<Object> countMutualFriends(@PathVariable Long userId1, @PathVariable Long userId2){
+        try {
+            return new ResponseEntity<>(userService.countMutualFriends(userId1, userId2), HttpStatus.OK);
+        } catch (UserNotFoundException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping("/{userId}/recommendations")
+    public ResponseEntity<Object> getFriendRecommendations(@PathVariable Long userId,
+            @RequestParam(required = false) Integer limit){
+        try {
+            return new ResponseEntity<>(userService.getFriendRecommendations(userId, limit), HttpStatus.OK);
+        } catch (UserNotFoundException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (RecommendationsUnavailableException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+}
@@ -10,9 +10,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import socialnetwork.exceptions.PasswordHashingUnavailableException;
+
 // acts as a global exception handler for validation errors.
 
 //if any controller in the application encounters a specific type of exception, handle it with the methods provided in this advice class.
@@ -30,5 +33,13 @@ public class ValidationHandler extends ResponseEntityExceptionHandler{
         });
         return new ResponseEntity<Object>(errors, HttpStatus.BAD_REQUEST);
     }
+
+    // the password hashing pool is saturated: tell the client to back off instead of queueing forever
+    @ExceptionHandler(PasswordHashingUnavailableException.class)
+    protected ResponseEntity<Object> handlePasswordHashingUnavailable(PasswordHashingUnavailableException ex) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<Object>(ex.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
     
 }
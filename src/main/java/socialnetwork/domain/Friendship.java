@@ -7,26 +7,36 @@ import jakarta.persistence.EnumType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 
+// A friendship is stored once per pair, with the smaller user id in userId1;
+// requesterId remembers which of the two asked for it.
 @Data
 @Entity
+@Table(name = "friendship", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id1", "user_id2"}))
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Friendship {
+    // ids are fetched 50 at a time from friendship_id_seq, which keeps inserts batchable
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "friendship_id_seq")
+    @SequenceGenerator(name = "friendship_id_seq", sequenceName = "friendship_id_seq", allocationSize = 50)
     private Long id;
 
     private Long userId1;
 
     private Long userId2;
 
+    private Long requesterId;
+
     @Enumerated(EnumType.STRING)
     private FriendshipStatus status;
 
@@ -39,8 +49,9 @@ public class Friendship {
     }
 
     public Friendship(Long userId1, Long userId2){
-        this.userId1 = userId1;
-        this.userId2 = userId2;
+        this.userId1 = Math.min(userId1, userId2);
+        this.userId2 = Math.max(userId1, userId2);
+        this.requesterId = userId1;
         this.status = FriendshipStatus.PENDING;
         this.createdAt = LocalDateTime.now();
     }
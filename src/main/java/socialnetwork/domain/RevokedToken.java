@@ -0,0 +1,24 @@
+package socialnetwork.domain;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RevokedToken {
+    // the "jti" claim of the revoked access token
+    @Id
+    private String tokenId;
+
+    private LocalDateTime expiresAt;
+}
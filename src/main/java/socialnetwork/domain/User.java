@@ -3,19 +3,27 @@ package socialnetwork.domain;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -33,8 +41,10 @@ import lombok.NoArgsConstructor;
 @Builder
 @Table(name = "app_user", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
 public class User implements UserDetails {
+    // ids are fetched 50 at a time from app_user_id_seq, which keeps inserts batchable
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "app_user_id_seq")
+    @SequenceGenerator(name = "app_user_id_seq", sequenceName = "app_user_id_seq", allocationSize = 50)
     private Long id;
 
     
@@ -43,6 +53,10 @@ public class User implements UserDetails {
     @Size(min = 4, max =  20, message = "Email should have between 4 and 15 characters")
     private String email;
 
+    // lower-cased, trimmed email that all lookups go through; kept in sync with email before every write
+    @JsonIgnore
+    @Column(name = "normalized_email", nullable = false, unique = true)
+    private String normalizedEmail;
 
     @NotEmpty(message = "Password cannot be empty")
     // @Size(min = 4, max = 20, message = "Password should have between 4 and 15 characters")
@@ -52,6 +66,26 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
 
+    // optimistic lock: updates only apply to the version the client read
+    @Version
+    private Long version;
+
+    // bumped by the database on every change; tokens carrying an older value are rejected
+    @JsonIgnore
+    @Builder.Default
+    @Column(name = "token_version", insertable = false, updatable = false)
+    private Integer tokenVersion = 0;
+
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeEmail() {
+        normalizedEmail = normalizeEmail(email);
+    }
 
     // essentially provides the roles/authorities associated with the user.
     // a user logs in and tries to access a particular method or endpoint,
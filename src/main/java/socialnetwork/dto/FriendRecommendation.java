@@ -0,0 +1,6 @@
+package socialnetwork.dto;
+
+// A suggested friend and how many friends the two users have in common.
+// For very well connected users the count comes from a sample of their friends, so it can be lower than the real one.
+public record FriendRecommendation(long userId, int mutualFriends) {
+}
@@ -0,0 +1,5 @@
+package socialnetwork.dto;
+
+// One row of a bulk import that was not inserted; line is 1-based and counts the CSV header.
+public record UserImportReject(long line, String email, String reason) {
+}
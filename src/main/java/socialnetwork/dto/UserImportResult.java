@@ -0,0 +1,21 @@
+package socialnetwork.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of a bulk user import.
+// rejects lists at most the configured number of rows; rejected always holds the full count.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportResult {
+    private long received;
+    private long imported;
+    private long rejected;
+    private List<UserImportReject> rejects;
+}
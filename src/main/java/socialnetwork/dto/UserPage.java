@@ -0,0 +1,21 @@
+package socialnetwork.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One page of a keyset-paginated listing.
+// nextCursor is opaque to clients and is null on the last page;
+// estimatedTotal is only filled when asked for, from planner statistics rather than COUNT(*).
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private Long estimatedTotal;
+}
@@ -0,0 +1,9 @@
+package socialnetwork.dto;
+
+import socialnetwork.domain.Role;
+
+// What the user read endpoints return. Also used directly as a JPA projection,
+// so only these columns are selected and no entity is hydrated or dirty-checked.
+// The password hash is never part of it. version is what a PATCH must send back.
+public record UserResponse(Long id, String email, Role role, Long version) {
+}
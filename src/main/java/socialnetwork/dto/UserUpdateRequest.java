@@ -0,0 +1,35 @@
+package socialnetwork.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import socialnetwork.domain.Role;
+
+// Body of PATCH /api/users/updateUser/{userId}: fields left null are not changed.
+// version is the one last read from the user; the update is refused with 409 if it moved on since.
+// PUT builds one from the user it receives, with a null version when the client sent none.
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserUpdateRequest {
+
+    @NotNull(message = "Version cannot be empty")
+    private Long version;
+
+    @Email
+    @Size(min = 4, max = 20, message = "Email should have between 4 and 15 characters")
+    private String email;
+
+    // same rules as at registration
+    @Pattern(regexp = "(?s).*\\S.*", message = "Password cannot be blank")
+    @Size(min = 8, max = 72, message = "Password should have between 8 and 72 characters")
+    private String password;
+
+    private Role role;
+}
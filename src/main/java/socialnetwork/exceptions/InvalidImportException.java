@@ -0,0 +1,7 @@
+package socialnetwork.exceptions;
+
+public class InvalidImportException extends RuntimeException{
+    public InvalidImportException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package socialnetwork.exceptions;
+
+public class PasswordHashingUnavailableException extends RuntimeException{
+    public PasswordHashingUnavailableException(String message){
+        super(message);
+    }
+
+    public PasswordHashingUnavailableException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
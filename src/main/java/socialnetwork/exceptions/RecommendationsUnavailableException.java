@@ -0,0 +1,7 @@
+package socialnetwork.exceptions;
+
+public class RecommendationsUnavailableException extends RuntimeException{
+    public RecommendationsUnavailableException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package socialnetwork.exceptions;
+
+public class StaleUserVersionException extends RuntimeException{
+    public StaleUserVersionException(String message){
+        super(message);
+    }
+}
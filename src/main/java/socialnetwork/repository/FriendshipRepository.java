@@ -4,22 +4,56 @@ import java.util.Optional;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import socialnetwork.domain.Friendship;
 
+// Pairs are stored canonically (userId1 < userId2), so a pair is always looked up in that order.
 public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
 
     boolean existsByUserId1AndUserId2(Long userId1, Long userId2);
-    void deleteByUserId1AndUserId2(Long userId1, Long userId2);
     Optional<Friendship> findByUserId1AndUserId2(Long userId1, Long userId2);
-    @Query("SELECT f FROM Friendship f WHERE f.userId1 = :userId OR f.userId2 = :userId")
+
+    // One index range per direction instead of an OR that the planner can only answer with a scan:
+    // the first half uses the unique (user_id1, user_id2) index, the second friendship_user_id2_idx.
+    @Query(value = "SELECT * FROM friendship WHERE user_id1 = :userId " +
+        "UNION ALL " +
+        "SELECT * FROM friendship WHERE user_id2 = :userId AND user_id1 <> :userId", nativeQuery = true)
     List<Friendship> getAllFriendshipsByUserId(@Param("userId") Long userId);
 
-    // :XX is used to denote a named parameter where XX is the name of the parameter 
-    @Query("Select CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM Friendship f " + 
-    "WHERE (f.userId1 = :userId1 AND f.userId2 = :userId2) OR (f.userId1 = :userId2 AND f.userId2 = :userId1)")
-    // a friendship between 2 users exists
-    boolean existsByBothUserIds(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+    // Friend ids only, answered from the two pair indexes without reading the table rows.
+    @Query(value = "SELECT user_id2 FROM friendship WHERE user_id1 = :userId " +
+        "UNION ALL " +
+        "SELECT user_id1 FROM friendship WHERE user_id2 = :userId AND user_id1 <> :userId " +
+        "ORDER BY 1", nativeQuery = true)
+    List<Long> findFriendIds(@Param("userId") Long userId);
+
+    // Creates the friendship in one statement: empty when the pair already exists.
+    // The unique pair constraint makes concurrent requests for the same pair safe, and a missing user
+    // shows up as a foreign key violation, so nothing needs to be checked beforehand.
+    // Deliberately not @Modifying: the RETURNING row is read as a query result.
+    @Transactional
+    @Query(value = "INSERT INTO friendship (user_id1, user_id2, requester_id, status, created_at) " +
+        "VALUES (LEAST(:requesterId, :addresseeId), GREATEST(:requesterId, :addresseeId), :requesterId, 'PENDING', LOCALTIMESTAMP) " +
+        "ON CONFLICT (user_id1, user_id2) DO NOTHING " +
+        "RETURNING *", nativeQuery = true)
+    Optional<Friendship> insertIfAbsent(@Param("requesterId") Long requesterId, @Param("addresseeId") Long addresseeId);
+
+    // a friendship between 2 users exists, whatever the order they are given in
+    default boolean existsByBothUserIds(Long userId1, Long userId2) {
+        return existsByUserId1AndUserId2(Math.min(userId1, userId2), Math.max(userId1, userId2));
+    }
+
+    // :XX is used to denote a named parameter where XX is the name of the parameter
+    // returns the number of rows deleted, 0 when the friendship did not exist
+    @Modifying
+    @Query("DELETE FROM Friendship f WHERE f.userId1 = :userId1 AND f.userId2 = :userId2")
+    int deleteCanonicalPair(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+
+    default int deleteByBothUserIds(Long userId1, Long userId2) {
+        return deleteCanonicalPair(Math.min(userId1, userId2), Math.max(userId1, userId2));
+    }
 }
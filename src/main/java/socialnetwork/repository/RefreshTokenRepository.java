@@ -0,0 +1,34 @@
+package socialnetwork.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import socialnetwork.domain.RefreshToken;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    Optional<RefreshToken> findByTokenHash(byte[] tokenHash);
+
+    // returns 0 when another request already used the token, so a token can only be rotated once
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true, r.revokedAt = LOCAL DATETIME WHERE r.id = :id AND r.revoked = false")
+    int revokeIfActive(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshToken r SET r.revoked = true, r.revokedAt = LOCAL DATETIME WHERE r.userId = :userId AND r.revoked = false")
+    int revokeAllByUserId(@Param("userId") Long userId);
+
+    // expired rows are useless; revoked ones are kept for a while so a reused token is still recognized
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < :now OR r.revokedAt < :revokedBefore")
+    int deleteExpiredOrRevokedBefore(@Param("now") LocalDateTime now, @Param("revokedBefore") LocalDateTime revokedBefore);
+}
@@ -0,0 +1,10 @@
+package socialnetwork.repository;
+
+// The row returned by the UPDATE ... RETURNING and DELETE ... RETURNING queries of UserRepository.
+public interface ReturnedUser {
+    Long getId();
+    String getEmail();
+    String getRole();
+    Long getVersion();
+    Integer getTokenVersion();
+}
@@ -1,20 +1,122 @@
 package socialnetwork.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
 import socialnetwork.domain.User;
+import socialnetwork.dto.UserResponse;
 
 
 public interface UserRepository extends JpaRepository<User, Long>{
-    Optional<User> findByEmail(String email);
+    String EXPORT_FETCH_SIZE = "1000";
+
+    // Emails are matched case-insensitively through the unique index on normalized_email.
+    Optional<User> findByNormalizedEmail(String normalizedEmail);
+
+    default Optional<User> findByEmail(String email) {
+        return findByNormalizedEmail(User.normalizeEmail(email));
+    }
+
     boolean existsById(Long id);
 
     //both users exists in db
     @Query("SELECT CASE WHEN COUNT(u) = 2 THEN true ELSE false END FROM User u " +
     "WHERE u.id IN (:userId1, :userId2)")
     boolean existsByBothUsers(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+
+    // read-only projections: select id, email and role only
+    Optional<UserResponse> findUserResponseById(Long id);
+    Optional<UserResponse> findUserResponseByNormalizedEmail(String normalizedEmail);
+
+    default Optional<UserResponse> findUserResponseByEmail(String email) {
+        return findUserResponseByNormalizedEmail(User.normalizeEmail(email));
+    }
+
+    // keyset pagination: the next `limit` users after the last id of the previous page, served by the primary key index
+    List<UserResponse> findUserResponsesByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Walks the whole table through a server-side cursor, EXPORT_FETCH_SIZE rows per round trip.
+    // Must be consumed inside a (read-only) transaction, otherwise the driver fetches everything at once.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT u FROM User u ORDER BY u.id")
+    Stream<User> streamAllOrderById();
+
+    // row estimate kept by ANALYZE/autovacuum, a COUNT(*) would scan the whole table
+    @Query(value = "SELECT CAST(reltuples AS BIGINT) FROM pg_class WHERE relname = 'app_user'", nativeQuery = true)
+    Long estimateCount();
+
+    // increments the token version and returns the new value in the same round trip
+    // no @Modifying on the RETURNING statements: it would run them with executeUpdate, which only gives a row count
+    @Transactional
+    @Query(value = "UPDATE app_user SET token_version = token_version + 1, token_version_changed_at = LOCALTIMESTAMP " +
+        "WHERE id = :userId RETURNING token_version", nativeQuery = true)
+    Optional<Integer> incrementTokenVersion(@Param("userId") Long userId);
+
+    // Applies a partial update in one statement, only if the row still has the expected version
+    // (a null version skips that check, for PUT without one).
+    // Null arguments leave their column unchanged; version and token_version are bumped.
+    // Empty when the user does not exist or was changed in the meantime.
+    // Deliberately not @Modifying: the RETURNING row is read as a query result.
+    @Transactional
+    @Query(value = "UPDATE app_user SET " +
+        "email = COALESCE(CAST(:email AS VARCHAR), email), " +
+        "normalized_email = COALESCE(CAST(:normalizedEmail AS VARCHAR), normalized_email), " +
+        "password = COALESCE(CAST(:password AS VARCHAR), password), " +
+        "role = COALESCE(CAST(:role AS VARCHAR), role), " +
+        "version = version + 1, " +
+        "token_version = token_version + 1, " +
+        "token_version_changed_at = LOCALTIMESTAMP " +
+        "WHERE id = :userId AND (CAST(:version AS BIGINT) IS NULL OR version = :version) " +
+        "RETURNING id, email, role, version, token_version AS \"tokenVersion\"", nativeQuery = true)
+    Optional<ReturnedUser> updateIfVersionMatches(@Param("userId") Long userId, @Param("version") Long version,
+        @Param("email") String email, @Param("normalizedEmail") String normalizedEmail,
+        @Param("password") String password, @Param("role") String role);
+
+    // Deletes and returns the user in one round trip; empty when there was no such user.
+    // The same statement writes the deleted_user tombstone, so a deletion is never committed without it.
+    // Deliberately not @Modifying: the RETURNING row is read as a query result.
+    @Transactional
+    @Query(value = "WITH deleted AS (DELETE FROM app_user WHERE id = :userId " +
+        "RETURNING id, email, role, version, token_version), " +
+        "tombstone AS (INSERT INTO deleted_user (user_id) SELECT id FROM deleted ON CONFLICT (user_id) DO NOTHING) " +
+        "SELECT id, email, role, version, token_version AS \"tokenVersion\" FROM deleted", nativeQuery = true)
+    Optional<ReturnedUser> deleteReturningById(@Param("userId") Long userId);
+
+    // used to store a re-hashed password after a successful login
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.normalizedEmail = :normalizedEmail")
+    int updatePasswordByNormalizedEmail(@Param("normalizedEmail") String normalizedEmail, @Param("password") String password);
+
+    default int updatePasswordByEmail(String email, String password) {
+        return updatePasswordByNormalizedEmail(User.normalizeEmail(email), password);
+    }
+
+    // users whose token version was bumped after `since`, through the partial index on token_version_changed_at
+    @Query(value = "SELECT id, token_version AS \"tokenVersion\" FROM app_user WHERE token_version_changed_at > :since",
+        nativeQuery = true)
+    List<UserTokenVersion> findTokenVersionsChangedSince(@Param("since") LocalDateTime since);
+
+    @Query(value = "SELECT user_id FROM deleted_user WHERE deleted_at > :since", nativeQuery = true)
+    List<Long> findUserIdsDeletedSince(@Param("since") LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM deleted_user WHERE deleted_at <= :before", nativeQuery = true)
+    int deleteTombstonesBefore(@Param("before") LocalDateTime before);
 }
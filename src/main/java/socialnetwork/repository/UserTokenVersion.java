@@ -0,0 +1,7 @@
+package socialnetwork.repository;
+
+// Projection with only the columns needed to rebuild the token version registry.
+public interface UserTokenVersion {
+    Long getId();
+    Integer getTokenVersion();
+}
@@ -0,0 +1,307 @@
+package socialnetwork.service;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.config.CacheFlushEvent;
+
+// In-memory copy of the friendship graph in compressed sparse row form: the sorted user ids,
+// one offset per user into a single array holding every user's sorted friend ids. Only primitive
+// arrays, so a million friendships cost about 16 MB and no boxed Long is ever created.
+// The arrays are immutable once built. Friendships created or deleted afterwards replace the friend
+// list of the two users in a small override map, which is folded into new arrays once it grows.
+// Loaded at startup and again after a CacheFlushEvent; callers fall back to the database until then.
+@Slf4j
+@Component
+public class FriendGraphIndex {
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final long[] NO_FRIENDS = new long[0];
+
+    private final boolean enabled;
+    private final int compactionThreshold;
+    private final JdbcTemplate jdbcTemplate;
+
+    // null until the first load has finished
+    private volatile Snapshot snapshot;
+    // friend lists changed since the snapshot was built; every value is sorted and never modified
+    private final Map<Long, long[]> overrides = new ConcurrentHashMap<>();
+    // changes seen while a load is reading the table, replayed on top of what it read; guarded by this
+    private List<FriendshipChangedEvent> changesDuringLoad;
+
+    public FriendGraphIndex(@Value("${socialnetwork.friend-graph.enabled:true}") boolean enabled,
+            @Value("${socialnetwork.friend-graph.compaction-threshold:10000}") int compactionThreshold,
+            JdbcTemplate jdbcTemplate, ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.compactionThreshold = compactionThreshold;
+        this.jdbcTemplate = jdbcTemplate;
+        meterRegistry.ifAvailable(registry -> {
+            Gauge.builder("friend-graph.users", this, index -> index.snapshot == null ? 0 : index.snapshot.nodeIds.length)
+                .register(registry);
+            Gauge.builder("friend-graph.overrides", overrides, Map::size).register(registry);
+        });
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    // a copy of the sorted friend ids
+    public long[] friendIds(long userId) {
+        Range friends = neighbours(userId);
+        return Arrays.copyOfRange(friends.ids(), friends.from(), friends.to());
+    }
+
+    public int degree(long userId) {
+        return neighbours(userId).size();
+    }
+
+    public boolean areFriends(long userId1, long userId2) {
+        Range friends1 = neighbours(userId1);
+        Range friends2 = neighbours(userId2);
+        // search the shorter list
+        return friends1.size() <= friends2.size() ? friends1.contains(userId2) : friends2.contains(userId1);
+    }
+
+    // The sorted friend ids of a user, as a view on the index arrays: must not be modified.
+    Range neighbours(long userId) {
+        long[] changed = overrides.get(userId);
+        if (changed != null) {
+            return new Range(changed, 0, changed.length);
+        }
+        Snapshot current = snapshot;
+        return current == null ? new Range(NO_FRIENDS, 0, 0) : current.neighbours(userId);
+    }
+
+    @EventListener({ApplicationReadyEvent.class, CacheFlushEvent.class})
+    @Transactional(readOnly = true)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        EdgeBuffer edges = new EdgeBuffer();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT user_id1, user_id2 FROM friendship");
+                statement.setFetchSize(FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) resultSet -> edges.add(resultSet.getLong(1), resultSet.getLong(2)));
+        } catch (RuntimeException ex) {
+            // keep serving what was there, including the changes seen meanwhile
+            synchronized (this) {
+                changesDuringLoad = null;
+            }
+            throw ex;
+        }
+        replace(edges.userIds1, edges.userIds2, edges.size);
+        log.info("Loaded {} friendships into the friend graph index", edges.size);
+    }
+
+    // Builds new arrays from the given friendships and replays the changes seen while they were read.
+    synchronized void replace(long[] userIds1, long[] userIds2, int size) {
+        snapshot = Snapshot.build(userIds1, userIds2, size);
+        overrides.clear();
+        if (changesDuringLoad != null) {
+            changesDuringLoad.forEach(this::apply);
+            changesDuringLoad = null;
+        }
+    }
+
+    // after the commit only, so a rolled back change never shows up here
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onFriendshipChanged(FriendshipChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(event);
+        }
+        if (snapshot != null) {
+            apply(event);
+        }
+    }
+
+    private void apply(FriendshipChangedEvent event) {
+        long userId1 = event.getUserId1();
+        long userId2 = event.getUserId2();
+        boolean created = event.getType() == FriendshipChangedEvent.Type.CREATED;
+        overrides.put(userId1, withOrWithout(neighbours(userId1), userId2, created));
+        overrides.put(userId2, withOrWithout(neighbours(userId2), userId1, created));
+        if (overrides.size() >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    // folds the overrides into new arrays; readers keep using the old ones until the swap
+    private void compact() {
+        Snapshot current = snapshot;
+        long[] changedIds = overrides.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        snapshot = current.merge(changedIds, overrides);
+        overrides.clear();
+    }
+
+    private static long[] withOrWithout(Range friends, long friendId, boolean add) {
+        int index = Arrays.binarySearch(friends.ids(), friends.from(), friends.to(), friendId);
+        int size = friends.size();
+        if (add == (index >= 0)) {
+            return Arrays.copyOfRange(friends.ids(), friends.from(), friends.to());
+        }
+        if (add) {
+            int at = -index - 1 - friends.from();
+            long[] result = new long[size + 1];
+            System.arraycopy(friends.ids(), friends.from(), result, 0, at);
+            result[at] = friendId;
+            System.arraycopy(friends.ids(), friends.from() + at, result, at + 1, size - at);
+            return result;
+        }
+        int at = index - friends.from();
+        long[] result = new long[size - 1];
+        System.arraycopy(friends.ids(), friends.from(), result, 0, at);
+        System.arraycopy(friends.ids(), index + 1, result, at, size - at - 1);
+        return result;
+    }
+
+    // ids[from, to) of a sorted friend list
+    record Range(long[] ids, int from, int to) {
+        int size() {
+            return to - from;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, from, to, id) >= 0;
+        }
+    }
+
+    private static final class Snapshot {
+        // sorted ids of the users that have at least one friend
+        private final long[] nodeIds;
+        // friends of nodeIds[i] are neighbours[offsets[i], offsets[i + 1]), sorted
+        private final int[] offsets;
+        private final long[] neighbours;
+
+        private Snapshot(long[] nodeIds, int[] offsets, long[] neighbours) {
+            this.nodeIds = nodeIds;
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+        }
+
+        Range neighbours(long userId) {
+            int node = Arrays.binarySearch(nodeIds, userId);
+            return node < 0 ? new Range(NO_FRIENDS, 0, 0) : new Range(neighbours, offsets[node], offsets[node + 1]);
+        }
+
+        static Snapshot build(long[] userIds1, long[] userIds2, int size) {
+            long[] endpoints = new long[size * 2];
+            System.arraycopy(userIds1, 0, endpoints, 0, size);
+            System.arraycopy(userIds2, 0, endpoints, size, size);
+            Arrays.sort(endpoints);
+            long[] nodeIds = distinct(endpoints);
+
+            int[] offsets = new int[nodeIds.length + 1];
+            for (int i = 0; i < size; i++) {
+                if (userIds1[i] != userIds2[i]) {
+                    offsets[Arrays.binarySearch(nodeIds, userIds1[i]) + 1]++;
+                    offsets[Arrays.binarySearch(nodeIds, userIds2[i]) + 1]++;
+                }
+            }
+            for (int i = 0; i < nodeIds.length; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            long[] neighbours = new long[offsets[nodeIds.length]];
+            int[] next = Arrays.copyOf(offsets, nodeIds.length);
+            for (int i = 0; i < size; i++) {
+                if (userIds1[i] != userIds2[i]) {
+                    neighbours[next[Arrays.binarySearch(nodeIds, userIds1[i])]++] = userIds2[i];
+                    neighbours[next[Arrays.binarySearch(nodeIds, userIds2[i])]++] = userIds1[i];
+                }
+            }
+            for (int i = 0; i < nodeIds.length; i++) {
+                Arrays.sort(neighbours, offsets[i], offsets[i + 1]);
+            }
+            return new Snapshot(nodeIds, offsets, neighbours);
+        }
+
+        // a new snapshot where the friend lists of changedIds (sorted) come from changes
+        Snapshot merge(long[] changedIds, Map<Long, long[]> changes) {
+            long[] allIds = new long[nodeIds.length + changedIds.length];
+            System.arraycopy(nodeIds, 0, allIds, 0, nodeIds.length);
+            System.arraycopy(changedIds, 0, allIds, nodeIds.length, changedIds.length);
+            Arrays.sort(allIds);
+            long[] candidates = distinct(allIds);
+
+            long[] mergedIds = new long[candidates.length];
+            int[] mergedOffsets = new int[candidates.length + 1];
+            int users = 0;
+            int total = 0;
+            for (long userId : candidates) {
+                long[] changed = changes.get(userId);
+                int degree = changed != null ? changed.length : neighbours(userId).size();
+                if (degree > 0) {
+                    mergedIds[users] = userId;
+                    total += degree;
+                    mergedOffsets[++users] = total;
+                }
+            }
+            long[] mergedNeighbours = new long[total];
+            for (int i = 0; i < users; i++) {
+                long[] changed = changes.get(mergedIds[i]);
+                if (changed != null) {
+                    System.arraycopy(changed, 0, mergedNeighbours, mergedOffsets[i], changed.length);
+                } else {
+                    Range friends = neighbours(mergedIds[i]);
+                    System.arraycopy(friends.ids(), friends.from(), mergedNeighbours, mergedOffsets[i], friends.size());
+                }
+            }
+            return new Snapshot(Arrays.copyOf(mergedIds, users), Arrays.copyOf(mergedOffsets, users + 1), mergedNeighbours);
+        }
+
+        // the distinct values of a sorted array
+        private static long[] distinct(long[] sorted) {
+            int count = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[count++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, count);
+        }
+    }
+
+    // growable pair of primitive arrays for the rows read at load time
+    private static final class EdgeBuffer {
+        private long[] userIds1 = new long[1024];
+        private long[] userIds2 = new long[1024];
+        private int size;
+
+        void add(long userId1, long userId2) {
+            if (size == userIds1.length) {
+                userIds1 = Arrays.copyOf(userIds1, size * 2);
+                userIds2 = Arrays.copyOf(userIds2, size * 2);
+            }
+            userIds1[size] = userId1;
+            userIds2[size] = userId2;
+            size++;
+        }
+    }
+}
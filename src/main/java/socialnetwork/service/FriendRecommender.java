@@ -0,0 +1,276 @@
+package socialnetwork.service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import socialnetwork.dto.FriendRecommendation;
+import socialnetwork.exceptions.RecommendationsUnavailableException;
+
+// "People you may know": ranks the friends of a user's friends by the number of friends in common.
+// Works on FriendGraphIndex only; a query per friend would be far too slow.
+// Counts go into a primitive long -> int map and the best ones are picked with a bounded min-heap,
+// so nothing is sorted and no boxed id is created. Users with very many friends (or friends of
+// friends) only look at an evenly spread sample of them, which bounds the work per request,
+// and when even the sampled work is large it is split across the fork/join common pool.
+// The index holds every friendship row whatever its status, so skipping the user's own neighbours
+// excludes both existing friends and pending requests.
+@Component
+public class FriendRecommender {
+
+    // leaves of the fork/join split handle at most this many friends
+    private static final int FRIENDS_PER_TASK = 64;
+
+    private final FriendGraphIndex friendGraphIndex;
+    private final int maximumFriendsSampled;
+    private final int maximumFriendsOfFriendSampled;
+    private final long parallelThreshold;
+
+    public FriendRecommender(FriendGraphIndex friendGraphIndex,
+            @Value("${socialnetwork.recommendations.maximum-friends-sampled:1000}") int maximumFriendsSampled,
+            @Value("${socialnetwork.recommendations.maximum-friends-of-friend-sampled:1000}") int maximumFriendsOfFriendSampled,
+            @Value("${socialnetwork.recommendations.parallel-threshold:200000}") long parallelThreshold) {
+        this.friendGraphIndex = friendGraphIndex;
+        this.maximumFriendsSampled = maximumFriendsSampled;
+        this.maximumFriendsOfFriendSampled = maximumFriendsOfFriendSampled;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // best first; ties go to the lower user id
+    public List<FriendRecommendation> recommend(long userId, int limit) {
+        if (!friendGraphIndex.isReady()) {
+            throw new RecommendationsUnavailableException("Recommendations are not available yet, try again later.");
+        }
+        FriendGraphIndex.Range friends = friendGraphIndex.neighbours(userId);
+        long[] sampledFriends = sample(friends, maximumFriendsSampled);
+
+        long work = 0;
+        for (long friendId : sampledFriends) {
+            work += Math.min(friendGraphIndex.degree(friendId), maximumFriendsOfFriendSampled);
+        }
+        LongIntCounter counts = work >= parallelThreshold
+            ? ForkJoinPool.commonPool().invoke(new CountTask(sampledFriends, 0, sampledFriends.length))
+            : count(sampledFriends, 0, sampledFriends.length);
+
+        TopK best = new TopK(limit);
+        counts.forEach((candidateId, mutualFriends) -> {
+            if (candidateId != userId && !friends.contains(candidateId)) {
+                best.offer(candidateId, mutualFriends);
+            }
+        });
+        return best.toList();
+    }
+
+    // counts, for every friend of a friend in sampledFriends[from, to), how many of those friends lead to it
+    private LongIntCounter count(long[] sampledFriends, int from, int to) {
+        LongIntCounter counts = new LongIntCounter(Math.min((to - from) * 16, 1 << 16));
+        for (int i = from; i < to; i++) {
+            FriendGraphIndex.Range friendsOfFriend = friendGraphIndex.neighbours(sampledFriends[i]);
+            if (friendsOfFriend.size() <= maximumFriendsOfFriendSampled) {
+                for (int j = friendsOfFriend.from(); j < friendsOfFriend.to(); j++) {
+                    counts.increment(friendsOfFriend.ids()[j]);
+                }
+            } else {
+                for (long candidateId : sample(friendsOfFriend, maximumFriendsOfFriendSampled)) {
+                    counts.increment(candidateId);
+                }
+            }
+        }
+        return counts;
+    }
+
+    // an evenly spread sample of at most maximum ids, starting at a random offset
+    private static long[] sample(FriendGraphIndex.Range range, int maximum) {
+        int size = range.size();
+        if (size <= maximum) {
+            long[] all = new long[size];
+            System.arraycopy(range.ids(), range.from(), all, 0, size);
+            return all;
+        }
+        long[] sample = new long[maximum];
+        double stride = (double) size / maximum;
+        double position = ThreadLocalRandom.current().nextDouble(stride);
+        for (int i = 0; i < maximum; i++, position += stride) {
+            sample[i] = range.ids()[range.from() + (int) position];
+        }
+        return sample;
+    }
+
+    private final class CountTask extends RecursiveTask<LongIntCounter> {
+        private final long[] sampledFriends;
+        private final int from;
+        private final int to;
+
+        CountTask(long[] sampledFriends, int from, int to) {
+            this.sampledFriends = sampledFriends;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected LongIntCounter compute() {
+            if (to - from <= FRIENDS_PER_TASK) {
+                return count(sampledFriends, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(sampledFriends, from, middle);
+            left.fork();
+            LongIntCounter right = new CountTask(sampledFriends, middle, to).compute();
+            LongIntCounter merged = left.join();
+            right.forEach(merged::add);
+            return merged;
+        }
+    }
+
+    // Open addressing long -> int map that only counts; a slot is empty while its count is 0.
+    static final class LongIntCounter {
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        LongIntCounter(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+            keys = new long[capacity];
+            counts = new int[capacity];
+        }
+
+        void increment(long key) {
+            add(key, 1);
+        }
+
+        void add(long key, int amount) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = amount;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot] += amount;
+        }
+
+        void forEach(LongIntConsumer consumer) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (counts[slot] != 0) {
+                    consumer.accept(keys[slot], counts[slot]);
+                }
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            counts = new int[oldCounts.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldCounts[slot] != 0) {
+                    add(oldKeys[slot], oldCounts[slot]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            // spread sequential ids over the table
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+
+    @FunctionalInterface
+    interface LongIntConsumer {
+        void accept(long key, int value);
+    }
+
+    // Keeps the k best (count, id) pairs in a min-heap whose root is the worst one kept.
+    static final class TopK {
+        private final long[] ids;
+        private final int[] counts;
+        private int size;
+
+        TopK(int k) {
+            ids = new long[k];
+            counts = new int[k];
+        }
+
+        void offer(long id, int count) {
+            if (size < ids.length) {
+                ids[size] = id;
+                counts[size] = count;
+                siftUp(size++);
+            } else if (size > 0 && isBetter(id, count, 0)) {
+                ids[0] = id;
+                counts[0] = count;
+                siftDown(0);
+            }
+        }
+
+        // empties the heap
+        List<FriendRecommendation> toList() {
+            // popping the root gives the worst first, so fill from the back
+            FriendRecommendation[] ordered = new FriendRecommendation[size];
+            for (int i = size - 1; i >= 0; i--) {
+                ordered[i] = new FriendRecommendation(ids[0], counts[0]);
+                size--;
+                ids[0] = ids[size];
+                counts[0] = counts[size];
+                siftDown(0);
+            }
+            return List.of(ordered);
+        }
+
+        // higher count wins, then the lower id
+        private boolean isBetter(long id, int count, int slot) {
+            return count > counts[slot] || (count == counts[slot] && id < ids[slot]);
+        }
+
+        private void siftUp(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (!isBetter(ids[parent], counts[parent], slot)) {
+                    return;
+                }
+                swap(slot, parent);
+                slot = parent;
+            }
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                int worst = slot;
+                int left = 2 * slot + 1;
+                int right = left + 1;
+                if (left < size && !isBetter(ids[left], counts[left], worst)) {
+                    worst = left;
+                }
+                if (right < size && !isBetter(ids[right], counts[right], worst)) {
+                    worst = right;
+                }
+                if (worst == slot) {
+                    return;
+                }
+                swap(slot, worst);
+                slot = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            int count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+        }
+    }
+}
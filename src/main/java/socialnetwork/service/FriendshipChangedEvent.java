@@ -0,0 +1,32 @@
+package socialnetwork.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// Published by UserService after a friendship is created or deleted.
+// Events received from another node through the invalidation bus are marked as remote.
+@Getter
+@ToString
+public class FriendshipChangedEvent {
+
+    public enum Type {
+        CREATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long userId1;
+    private final Long userId2;
+    private final boolean remote;
+
+    public FriendshipChangedEvent(Type type, Long userId1, Long userId2) {
+        this(type, userId1, userId2, false);
+    }
+
+    public FriendshipChangedEvent(Type type, Long userId1, Long userId2, boolean remote) {
+        this.type = type;
+        this.userId1 = userId1;
+        this.userId2 = userId2;
+        this.remote = remote;
+    }
+}
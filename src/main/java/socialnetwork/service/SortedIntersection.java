@@ -0,0 +1,87 @@
+package socialnetwork.service;
+
+import java.util.Arrays;
+
+// Intersection of two sorted, duplicate-free long ranges, used for mutual friends.
+// Lists of similar length are merged in one linear pass. When one is much longer, each id of the
+// short list is galloped for in the long one instead (doubling steps, then a binary search),
+// which costs O(small * log(large / small)) rather than O(small + large).
+final class SortedIntersection {
+
+    // beyond this length ratio galloping beats the linear merge
+    static final int GALLOP_RATIO = 16;
+
+    private SortedIntersection() {
+    }
+
+    static long[] intersect(long[] a, int aFrom, int aTo, long[] b, int bFrom, int bTo) {
+        long[] result = new long[Math.min(aTo - aFrom, bTo - bFrom)];
+        int size = intersect(a, aFrom, aTo, b, bFrom, bTo, result);
+        return Arrays.copyOf(result, size);
+    }
+
+    static int count(long[] a, int aFrom, int aTo, long[] b, int bFrom, int bTo) {
+        return intersect(a, aFrom, aTo, b, bFrom, bTo, null);
+    }
+
+    // writes the common ids to result unless it is null; returns how many there are
+    private static int intersect(long[] a, int aFrom, int aTo, long[] b, int bFrom, int bTo, long[] result) {
+        int aSize = aTo - aFrom;
+        int bSize = bTo - bFrom;
+        if (aSize > bSize) {
+            return intersect(b, bFrom, bTo, a, aFrom, aTo, result);
+        }
+        if (aSize == 0) {
+            return 0;
+        }
+        return (long) aSize * GALLOP_RATIO < bSize
+            ? gallop(a, aFrom, aTo, b, bFrom, bTo, result)
+            : merge(a, aFrom, aTo, b, bFrom, bTo, result);
+    }
+
+    private static int merge(long[] a, int i, int aTo, long[] b, int j, int bTo, long[] result) {
+        int size = 0;
+        while (i < aTo && j < bTo) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                if (result != null) {
+                    result[size] = a[i];
+                }
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    // a is the short range
+    private static int gallop(long[] small, int i, int smallTo, long[] large, int low, int largeTo, long[] result) {
+        int size = 0;
+        for (; i < smallTo && low < largeTo; i++) {
+            long id = small[i];
+            // double the step until large[high] >= id, then binary search the last step
+            int step = 1;
+            int high = low;
+            while (high < largeTo && large[high] < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(large, low, Math.min(high + 1, largeTo), id);
+            if (found >= 0) {
+                if (result != null) {
+                    result[size] = id;
+                }
+                size++;
+                low = found + 1;
+            } else {
+                low = -found - 1;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,145 @@
+package socialnetwork.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import socialnetwork.config.CacheFlushEvent;
+import socialnetwork.domain.User;
+import socialnetwork.dto.UserResponse;
+
+// In-process cache of user profiles for getUserById/getUserByEmail, keyed both by id and by normalized email.
+// Caffeine's eviction is frequency-aware (W-TinyLFU), so hot profiles survive a scan of cold ones.
+// Misses are cached too, but only for a short time, so a just-created user shows up quickly.
+// Only immutable UserResponse records are cached, never JPA entities.
+// The email entry of a user is tracked by id, so a change known only by id evicts it without a scan.
+@Component
+public class UserCache {
+
+    private final boolean enabled;
+    private final Cache<Long, Optional<UserResponse>> byId;
+    private final Cache<String, Optional<UserResponse>> byEmail;
+    private final Map<Long, String> emailsById = new ConcurrentHashMap<>();
+
+    public UserCache(@Value("${socialnetwork.user-cache.enabled:true}") boolean enabled,
+            @Value("${socialnetwork.user-cache.maximum-size:50000}") long maximumSize,
+            @Value("${socialnetwork.user-cache.time-to-live:PT10M}") Duration timeToLive,
+            @Value("${socialnetwork.user-cache.negative-time-to-live:PT5S}") Duration negativeTimeToLive,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.byId = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new PresenceExpiry<Long>(timeToLive, negativeTimeToLive))
+            .recordStats()
+            .build();
+        this.byEmail = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new PresenceExpiry<String>(timeToLive, negativeTimeToLive))
+            // runs inside the eviction of the entry, so it cannot drop the index of a newer entry for the same key
+            .evictionListener((String email, Optional<UserResponse> user, RemovalCause cause) -> unindex(email, user))
+            .recordStats()
+            .build();
+        meterRegistry.ifAvailable(registry -> {
+            CaffeineCacheMetrics.monitor(registry, byId, "users.by-id");
+            CaffeineCacheMetrics.monitor(registry, byEmail, "users.by-email");
+        });
+    }
+
+    public Optional<UserResponse> getById(Long userId, Function<Long, Optional<UserResponse>> loader) {
+        if (!enabled) {
+            return loader.apply(userId);
+        }
+        Optional<UserResponse> user = byId.get(userId, loader);
+        user.ifPresent(found -> {
+            String email = User.normalizeEmail(found.email());
+            byEmail.put(email, user);
+            emailsById.put(found.id(), email);
+        });
+        return user;
+    }
+
+    public Optional<UserResponse> getByEmail(String email, Function<String, Optional<UserResponse>> loader) {
+        if (!enabled) {
+            return loader.apply(email);
+        }
+        String key = User.normalizeEmail(email);
+        Optional<UserResponse> user = byEmail.get(key, loader);
+        user.ifPresent(found -> {
+            byId.put(found.id(), user);
+            emailsById.put(found.id(), key);
+        });
+        return user;
+    }
+
+    @EventListener(CacheFlushEvent.class)
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byEmail.invalidateAll();
+        emailsById.clear();
+    }
+
+    // after the commit: evicting earlier lets a concurrent read cache the old row again for the whole TTL
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() != null) {
+            byId.invalidate(event.getUserId());
+            // the old email may differ from the new one (or be unknown), so it is found by id as well
+            String email = emailsById.remove(event.getUserId());
+            if (email != null) {
+                byEmail.invalidate(email);
+            }
+        }
+        if (event.getEmail() != null) {
+            String email = User.normalizeEmail(event.getEmail());
+            unindex(email, byEmail.asMap().remove(email));
+        }
+    }
+
+    private void unindex(String email, Optional<UserResponse> user) {
+        if (user != null && user.isPresent()) {
+            emailsById.remove(user.get().id(), email);
+        }
+    }
+
+    // Found users live for the normal TTL, misses only for the short negative TTL.
+    private static class PresenceExpiry<K> implements Expiry<K, Optional<UserResponse>> {
+        private final long timeToLiveNanos;
+        private final long negativeTimeToLiveNanos;
+
+        PresenceExpiry(Duration timeToLive, Duration negativeTimeToLive) {
+            this.timeToLiveNanos = timeToLive.toNanos();
+            this.negativeTimeToLiveNanos = negativeTimeToLive.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(K key, Optional<UserResponse> value, long currentTime) {
+            return value.isPresent() ? timeToLiveNanos : negativeTimeToLiveNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, Optional<UserResponse> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(K key, Optional<UserResponse> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
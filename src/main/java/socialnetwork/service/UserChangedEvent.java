@@ -0,0 +1,38 @@
+package socialnetwork.service;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// Published by UserService after a user is created, updated or deleted,
+// so caches and registries that hold user data can drop or refresh their entries.
+// Events received from another node through the invalidation bus are marked as remote.
+@Getter
+@ToString
+public class UserChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long userId;
+    // may be null when the caller only knows the id
+    private final String email;
+    // the new token version, or null when it did not change
+    private final Integer tokenVersion;
+    private final boolean remote;
+
+    public UserChangedEvent(Type type, Long userId, String email, Integer tokenVersion) {
+        this(type, userId, email, tokenVersion, false);
+    }
+
+    public UserChangedEvent(Type type, Long userId, String email, Integer tokenVersion, boolean remote) {
+        this.type = type;
+        this.userId = userId;
+        this.email = email;
+        this.tokenVersion = tokenVersion;
+        this.remote = remote;
+    }
+}
@@ -0,0 +1,66 @@
+package socialnetwork.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+import socialnetwork.domain.User;
+import socialnetwork.repository.UserRepository;
+
+// Streams every user as newline-delimited JSON (one object per line).
+// Rows come from a server-side cursor and are written straight to the response through Jackson's
+// streaming generator, then detached, so memory stays flat whatever the size of app_user.
+@Service
+public class UserExportService {
+
+    // flush to the client every this many rows, so the first bytes leave immediately
+    private static final int FLUSH_EVERY = 1000;
+
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public UserExportService(UserRepository userRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public long exportUsers(OutputStream outputStream) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+                Stream<User> users = userRepository.streamAllOrderById()) {
+            generator.setRootValueSeparator(null);
+            // the servlet container owns the response stream
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (User user : (Iterable<User>) users::iterator) {
+                writeUser(generator, user);
+                entityManager.detach(user);
+                if (++count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+        return count;
+    }
+
+    // the password hash is never exported
+    private static void writeUser(JsonGenerator generator, User user) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", user.getId());
+        generator.writeStringField("email", user.getEmail());
+        generator.writeStringField("role", user.getRole() == null ? null : user.getRole().name());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
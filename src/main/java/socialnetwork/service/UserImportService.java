@@ -0,0 +1,448 @@
+package socialnetwork.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.dto.UserImportReject;
+import socialnetwork.dto.UserImportResult;
+import socialnetwork.exceptions.InvalidImportException;
+
+// Bulk user import for partner onboarding.
+// The upload is read in chunks: every chunk is validated in parallel against the User constraints,
+// its passwords are hashed through the application's bounded password encoder, a few at a time so the
+// import never takes more than hashing-threads slots of the pool the logins use, and the rows are
+// spooled to a temporary file. Only then is a transaction opened: the file is streamed with COPY
+// into a temporary staging table, and one INSERT ... ON CONFLICT moves everything into app_user,
+// skipping emails that are already taken and reporting them back. Hashing a large upload takes minutes,
+// and none of it holds a connection.
+// Users are not published one by one: a negative cache entry for an imported email expires on its own.
+@Slf4j
+@Service
+public class UserImportService {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final int CHUNK_SIZE = 5000;
+
+    // an unterminated quote stops swallowing the following lines here
+    private static final int MAXIMUM_RECORD_LENGTH = 64 * 1024;
+
+    private static final String CREATE_STAGING_TABLE =
+        "CREATE TEMPORARY TABLE user_import_staging (" +
+        "line BIGINT NOT NULL, " +
+        "email VARCHAR(255) NOT NULL, " +
+        "normalized_email VARCHAR(255) NOT NULL, " +
+        "password VARCHAR(255) NOT NULL, " +
+        "role VARCHAR(255) NOT NULL" +
+        ") ON COMMIT DROP";
+
+    private static final String COPY_STAGING =
+        "COPY user_import_staging (line, email, normalized_email, password, role) FROM STDIN WITH (FORMAT csv)";
+
+    // the rows that come back are the ones whose email was already taken
+    private static final String MERGE_STAGING =
+        "WITH inserted AS (" +
+        "INSERT INTO app_user (email, normalized_email, password, role) " +
+        "SELECT email, normalized_email, password, role FROM user_import_staging ORDER BY line " +
+        "ON CONFLICT (normalized_email) DO NOTHING " +
+        "RETURNING normalized_email) " +
+        "SELECT s.line, s.email FROM user_import_staging s " +
+        "WHERE NOT EXISTS (SELECT 1 FROM inserted i WHERE i.normalized_email = s.normalized_email) " +
+        "ORDER BY s.line";
+
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final int maximumReportedRejects;
+
+    public UserImportService(DataSource dataSource, TransactionTemplate transactionTemplate, Validator validator,
+            ObjectMapper objectMapper, PasswordEncoder passwordEncoder,
+            @Value("${socialnetwork.user-import.hashing-threads:2}") int hashingThreads,
+            @Value("${socialnetwork.user-import.hashing-queue-capacity:1000}") int hashingQueueCapacity,
+            @Value("${socialnetwork.user-import.maximum-reported-rejects:10000}") int maximumReportedRejects) {
+        this.dataSource = dataSource;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        // the bounded encoder: imports share its cost, its pool and its 503 back-pressure with the logins
+        this.passwordEncoder = passwordEncoder;
+        this.maximumReportedRejects = maximumReportedRejects;
+        AtomicInteger threadNumber = new AtomicInteger();
+        // these threads only wait for the password encoder, which limits how many import hashes are in flight;
+        // when the queue is full the importing thread waits on one itself, which slows the upload down
+        this.hashingExecutor = new ThreadPoolExecutor(hashingThreads, hashingThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(hashingQueueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "user-import-hashing-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+    }
+
+    public UserImportResult importUsers(InputStream input, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Rejects rejects = new Rejects(maximumReportedRejects);
+        Path spool = Files.createTempFile("user-import-", ".csv");
+        try {
+            Spooled spooled = spool(reader, format, spool, rejects);
+            long duplicates = transactionTemplate.execute(status -> copyAndMerge(spool, rejects));
+            long imported = spooled.staged() - duplicates;
+            log.info("Imported {} of {} users, {} rejected", imported, spooled.received(), rejects.count);
+            return UserImportResult.builder()
+                .received(spooled.received())
+                .imported(imported)
+                .rejected(rejects.count)
+                .rejects(rejects.reported)
+                .build();
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    // reads, validates and hashes the whole upload into the spool file, in the staging table's CSV layout
+    private Spooled spool(BufferedReader reader, Format format, Path spool, Rejects rejects) throws IOException {
+        RowParser parser = format == Format.CSV ? new CsvRowParser(reader.readLine()) : new NdjsonRowParser();
+        long lineNumber = format == Format.CSV ? 1 : 0;
+
+        Set<String> seenEmails = new HashSet<>();
+        List<RawRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        long received = 0;
+        long staged = 0;
+        try (Writer writer = Files.newBufferedWriter(spool, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                long recordLine = lineNumber;
+                if (format == Format.CSV && CsvRowParser.hasOpenQuote(line)) {
+                    // a quoted field goes on until its closing quote, line breaks included
+                    StringBuilder record = new StringBuilder(line);
+                    String next;
+                    while (CsvRowParser.hasOpenQuote(record) && record.length() < MAXIMUM_RECORD_LENGTH
+                            && (next = reader.readLine()) != null) {
+                        lineNumber++;
+                        record.append('\n').append(next);
+                    }
+                    line = record.toString();
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                received++;
+                chunk.add(new RawRow(recordLine, line));
+                if (chunk.size() == CHUNK_SIZE) {
+                    staged += spoolChunk(writer, parser, chunk, seenEmails, rejects);
+                    chunk.clear();
+                }
+            }
+            staged += spoolChunk(writer, parser, chunk, seenEmails, rejects);
+        }
+        return new Spooled(received, staged);
+    }
+
+    // validates, deduplicates and hashes one chunk; returns the number of rows written
+    private long spoolChunk(Writer writer, RowParser parser, List<RawRow> chunk,
+            Set<String> seenEmails, Rejects rejects) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Row> rows = chunk.parallelStream()
+            .map(raw -> validate(parser, raw))
+            .toList();
+
+        List<Row> accepted = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (row.reason() != null) {
+                rejects.add(new UserImportReject(row.line(), row.user() == null ? null : row.user().getEmail(), row.reason()));
+            } else if (!seenEmails.add(row.user().getNormalizedEmail())) {
+                rejects.add(new UserImportReject(row.line(), row.user().getEmail(), "duplicate email in upload"));
+            } else {
+                accepted.add(row);
+            }
+        }
+
+        List<Future<String>> hashes = new ArrayList<>(accepted.size());
+        for (Row row : accepted) {
+            String password = row.user().getPassword();
+            hashes.add(hashingExecutor.submit(() -> passwordEncoder.encode(password)));
+        }
+
+        StringBuilder csv = new StringBuilder(accepted.size() * 128);
+        for (int i = 0; i < accepted.size(); i++) {
+            User user = accepted.get(i).user();
+            csv.append(accepted.get(i).line()).append(',');
+            appendCsvField(csv, user.getEmail()).append(',');
+            appendCsvField(csv, user.getNormalizedEmail()).append(',');
+            appendCsvField(csv, await(hashes.get(i))).append(',');
+            csv.append(user.getRole().name()).append('\n');
+        }
+        writer.append(csv);
+        return accepted.size();
+    }
+
+    // The only part that runs in the transaction; returns the number of rows whose email was already taken.
+    private long copyAndMerge(Path spool, Rejects rejects) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (Reader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE);
+            }
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING, reader);
+            try (Statement statement = connection.createStatement()) {
+                // temporary tables are never analyzed automatically
+                statement.execute("ANALYZE user_import_staging");
+            }
+            long duplicates = 0;
+            try (PreparedStatement statement = connection.prepareStatement(MERGE_STAGING);
+                    ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    duplicates++;
+                    rejects.add(new UserImportReject(resultSet.getLong(1), resultSet.getString(2), "email already exists"));
+                }
+            }
+            return duplicates;
+        } catch (SQLException ex) {
+            throw new SQLErrorCodeSQLExceptionTranslator(dataSource).translate("user import", null, ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private Row validate(RowParser parser, RawRow raw) {
+        User user;
+        try {
+            user = parser.parse(raw.text());
+        } catch (InvalidImportException ex) {
+            return new Row(raw.line(), null, ex.getMessage());
+        }
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            String reason = violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+            return new Row(raw.line(), user, reason);
+        }
+        user.setNormalizedEmail(User.normalizeEmail(user.getEmail()));
+        return new Row(raw.line(), user, null);
+    }
+
+    private static String await(Future<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing imported passwords.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private static StringBuilder appendCsvField(StringBuilder csv, String value) {
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static Role parseRole(String role) {
+        if (role == null || role.isBlank()) {
+            return Role.USER;
+        }
+        try {
+            return Role.valueOf(role.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidImportException("role: must be one of " + Arrays.toString(Role.values()));
+        }
+    }
+
+    private record RawRow(long line, String text) {
+    }
+
+    private record Spooled(long received, long staged) {
+    }
+
+    // either a valid user (reason == null) or a reject
+    private record Row(long line, User user, String reason) {
+    }
+
+    private static final class Rejects {
+        private final int maximumReported;
+        private final List<UserImportReject> reported = new ArrayList<>();
+        private long count;
+
+        Rejects(int maximumReported) {
+            this.maximumReported = maximumReported;
+        }
+
+        void add(UserImportReject reject) {
+            count++;
+            if (reported.size() < maximumReported) {
+                reported.add(reject);
+            }
+        }
+    }
+
+    interface RowParser {
+        User parse(String line);
+    }
+
+    // Header row required; columns are email, password and an optional role (USER when missing), in any order.
+    // Fields may be quoted; a quoted field may hold commas, doubled quotes and line breaks.
+    static final class CsvRowParser implements RowParser {
+        private final int emailColumn;
+        private final int passwordColumn;
+        private final int roleColumn;
+
+        CsvRowParser(String header) {
+            if (header == null) {
+                throw new InvalidImportException("The CSV upload is empty.");
+            }
+            List<String> columns = splitCsvLine(header).stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .toList();
+            emailColumn = columns.indexOf("email");
+            passwordColumn = columns.indexOf("password");
+            roleColumn = columns.indexOf("role");
+            if (emailColumn < 0 || passwordColumn < 0) {
+                throw new InvalidImportException("The CSV header must name the email and password columns.");
+            }
+        }
+
+        @Override
+        public User parse(String line) {
+            List<String> fields = splitCsvLine(line);
+            int required = Math.max(Math.max(emailColumn, passwordColumn), roleColumn) + 1;
+            if (fields.size() < required) {
+                throw new InvalidImportException("expected " + required + " columns, found " + fields.size());
+            }
+            return User.builder()
+                .email(fields.get(emailColumn).trim())
+                .password(fields.get(passwordColumn))
+                .role(parseRole(roleColumn < 0 ? null : fields.get(roleColumn)))
+                .build();
+        }
+
+        // an odd number of quotes leaves a quoted field open: the record continues on the next line
+        static boolean hasOpenQuote(CharSequence line) {
+            boolean open = false;
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"') {
+                    open = !open;
+                }
+            }
+            return open;
+        }
+
+        private static List<String> splitCsvLine(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            if (quoted) {
+                throw new InvalidImportException("unterminated quoted field");
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    // One JSON object per line with email, password and an optional role.
+    private final class NdjsonRowParser implements RowParser {
+        @Override
+        public User parse(String line) {
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException ex) {
+                throw new InvalidImportException("malformed JSON");
+            }
+            if (node == null || !node.isObject()) {
+                throw new InvalidImportException("expected a JSON object");
+            }
+            return User.builder()
+                .email(node.path("email").isTextual() ? node.get("email").asText().trim() : null)
+                .password(node.path("password").isTextual() ? node.get("password").asText() : null)
+                .role(parseRole(node.path("role").isTextual() ? node.get("role").asText() : null))
+                .build();
+        }
+    }
+}
@@ -1,45 +1,118 @@
 package socialnetwork.service;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import jakarta.transaction.Transactional;
 import socialnetwork.domain.Friendship;
+import socialnetwork.domain.Role;
 import socialnetwork.domain.User;
+import socialnetwork.dto.FriendRecommendation;
+import socialnetwork.dto.UserPage;
+import socialnetwork.dto.UserResponse;
+import socialnetwork.dto.UserUpdateRequest;
 import socialnetwork.exceptions.ExistingFriendshipException;
+import socialnetwork.exceptions.InvalidCursorException;
 import socialnetwork.exceptions.NotExistingFriendshipException;
 import socialnetwork.exceptions.SameUserFriendshipException;
+import socialnetwork.exceptions.StaleUserVersionException;
 import socialnetwork.exceptions.UserNotFoundException;
 import socialnetwork.exceptions.WrongUserException;
 import socialnetwork.repository.FriendshipRepository;
+import socialnetwork.repository.ReturnedUser;
 import socialnetwork.repository.UserRepository;
 
 
 @Service
 public class UserService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int DEFAULT_RECOMMENDATIONS = 10;
+    public static final int MAX_RECOMMENDATIONS = 100;
+
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
     private final UserRepository userRepository;
     private final FriendshipRepository friendshipRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserCache userCache;
+    private final PasswordEncoder passwordEncoder;
+    private final FriendGraphIndex friendGraphIndex;
+    private final FriendRecommender friendRecommender;
 
-    public UserService(UserRepository userRepository, FriendshipRepository friendshipRepository) {
+    public UserService(UserRepository userRepository, FriendshipRepository friendshipRepository,
+            ApplicationEventPublisher eventPublisher, UserCache userCache, PasswordEncoder passwordEncoder,
+            FriendGraphIndex friendGraphIndex, FriendRecommender friendRecommender) {
         this.userRepository = userRepository;
         this.friendshipRepository = friendshipRepository;
+        this.eventPublisher = eventPublisher;
+        this.userCache = userCache;
+        this.passwordEncoder = passwordEncoder;
+        this.friendGraphIndex = friendGraphIndex;
+        this.friendRecommender = friendRecommender;
     }
 
 
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    // Keyset pagination on id: each page starts right after the last id of the previous one,
+    // so the cost of a page does not grow with its position and nothing is loaded beyond it.
+    public UserPage<UserResponse> getUsersPage(String cursor, Integer size, boolean includeTotal) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        long afterId = cursor == null || cursor.isEmpty() ? 0L : decodeCursor(cursor);
+        // one extra row tells whether there is a next page
+        List<UserResponse> users = userRepository.findUserResponsesByIdGreaterThanOrderByIdAsc(afterId, Limit.of(pageSize + 1));
+        boolean hasNext = users.size() > pageSize;
+        if (hasNext) {
+            users = users.subList(0, pageSize);
+        }
+        return UserPage.<UserResponse>builder()
+            .items(users)
+            .nextCursor(hasNext ? encodeCursor(users.get(users.size() - 1).id()) : null)
+            .estimatedTotal(includeTotal ? estimateUserCount() : null)
+            .build();
+    }
+
+    private Long estimateUserCount() {
+        Long estimate = userRepository.estimateCount();
+        // -1 means the table was never analyzed
+        return estimate == null ? null : Math.max(estimate, 0L);
+    }
+
+    private static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidCursorException("Invalid cursor.");
+        }
     }
 
     public User createUser(User user) {
-        return userRepository.save(user);
+        User createdUser = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.CREATED, createdUser.getId(), createdUser.getEmail(), null));
+        return createdUser;
     }
 
-    public void deleteUser(Long userId) {
-        userRepository.deleteById(userId);
+    // A single DELETE ... RETURNING: the deleted row comes back with it, empty when there was no such user.
+    public Optional<UserResponse> deleteUser(Long userId) {
+        Optional<ReturnedUser> deleted = userRepository.deleteReturningById(userId);
+        deleted.ifPresent(user ->
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.DELETED, userId, user.getEmail(), null)));
+        return deleted.map(UserService::toUserResponse);
     }
 
     // using optional to handle the scenario where the user is not found
@@ -47,25 +120,51 @@ public class UserService {
         return userRepository.findById(userID);
     }
 
-    public User updateUser(User user){
-        return userRepository.save(user);
+    // served from UserCache; evicted through UserChangedEvent on every create, update and delete
+    public Optional<UserResponse> getUserResponseById(Long userId){
+        return userCache.getById(userId, userRepository::findUserResponseById);
+    }
+
+    public Optional<UserResponse> getUserResponseByEmail(String email){
+        return userCache.getByEmail(email, userRepository::findUserResponseByEmail);
+    }
+
+    // One conditional UPDATE, no read before it: it only applies if the row still has the version the client sent.
+    // Every update also bumps the token version, so tokens issued before it stop being accepted in claims-only mode.
+    // Not @Transactional on purpose: the password is hashed before, without holding a connection.
+    public UserResponse updateUser(Long userId, UserUpdateRequest request){
+        String password = request.getPassword() == null ? null : passwordEncoder.encode(request.getPassword());
+        Optional<ReturnedUser> updated = userRepository.updateIfVersionMatches(userId, request.getVersion(),
+            request.getEmail(), User.normalizeEmail(request.getEmail()), password,
+            request.getRole() == null ? null : request.getRole().name());
+        if (updated.isEmpty()) {
+            // only the failure path pays for a second query, to tell the two cases apart
+            if (!userRepository.existsById(userId)) {
+                throw new UserNotFoundException("User not found");
+            }
+            throw new StaleUserVersionException("The user was changed in the meantime, reload it and try again.");
+        }
+        ReturnedUser updatedUser = updated.get();
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.UPDATED, updatedUser.getId(),
+            updatedUser.getEmail(), updatedUser.getTokenVersion()));
+        return toUserResponse(updatedUser);
+    }
+
+    private static UserResponse toUserResponse(ReturnedUser user) {
+        return new UserResponse(user.getId(), user.getEmail(), Role.valueOf(user.getRole()), user.getVersion());
     }
 
     public Optional<User> getUserByEmail(String email){
         return userRepository.findByEmail(email);
     }
 
-    public Optional<User> deleteUserByIdWithError(Long userId){
+    public UserResponse deleteUserByIdWithError(Long userId){
         if (userId % 2 == 0){
             throw new WrongUserException("Cannot delete a user with even id");
         }
         else{
-            Optional<User> optionalUser = userRepository.findById(userId);
-            if (optionalUser.isPresent()){
-                userRepository.deleteById(userId);
-                return optionalUser;
-            }
-            else throw new UserNotFoundException("Cannot find this user in databse");
+            return deleteUser(userId)
+                .orElseThrow(() -> new UserNotFoundException("Cannot find this user in databse"));
         }
     }
 
@@ -73,21 +172,31 @@ public class UserService {
         return userRepository.existsById(userId);
     }
 
+    // A single INSERT ... ON CONFLICT DO NOTHING: no row back means the friendship already existed,
+    // a foreign key violation means one of the users does not exist.
     public Optional<Friendship> createFriendship(Long userId1, Long userId2){
         if (userId1.equals(userId2)){
             throw new SameUserFriendshipException("Cannot create friendship with the same user");
         }
-        if (!userRepository.existsByBothUsers(userId1, userId2)){
-            throw new UserNotFoundException("User with this id doesn`t exist.");
+        Optional<Friendship> friendship;
+        try {
+            friendship = friendshipRepository.insertIfAbsent(userId1, userId2);
+        } catch (DataIntegrityViolationException ex) {
+            if (isForeignKeyViolation(ex)) {
+                throw new UserNotFoundException("User with this id doesn`t exist.");
+            }
+            throw ex;
         }
-        // verify if friendship doesn`t exist
-        else{
-            if (friendshipRepository.existsByBothUserIds(userId1, userId2))
-                throw new ExistingFriendshipException("This friendship already exists.");
+        if (friendship.isEmpty()) {
+            throw new ExistingFriendshipException("This friendship already exists.");
         }
-        Friendship friendship = new Friendship(userId1, userId2);
-        friendshipRepository.save(friendship);
-        return Optional.of(friendship);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(FriendshipChangedEvent.Type.CREATED, userId1, userId2));
+        return friendship;
+    }
+
+    private static boolean isForeignKeyViolation(DataIntegrityViolationException ex) {
+        return NestedExceptionUtils.getMostSpecificCause(ex) instanceof SQLException sqlException
+            && FOREIGN_KEY_VIOLATION.equals(sqlException.getSQLState());
     }
 
     // ? should i delete after friendship id or user id?\
@@ -96,17 +205,12 @@ public class UserService {
         if (!userRepository.existsByBothUsers(userId1, userId2)){
             throw new UserNotFoundException("User with this id doesn`t exist.");
         }
-        // verify if friendship exists
+        // the pair is stored once, so a single delete tells whether the friendship existed
         else{
-            if (friendshipRepository.existsByUserId1AndUserId2(userId1, userId2)){
-                friendshipRepository.deleteByUserId1AndUserId2(userId1, userId2);
-            }
-            else if (friendshipRepository.existsByUserId1AndUserId2(userId2, userId1)){
-                friendshipRepository.deleteByUserId1AndUserId2(userId2, userId1);
-            }
-            else {
+            if (friendshipRepository.deleteByBothUserIds(userId1, userId2) == 0){
                 throw new NotExistingFriendshipException("This friendship doesn`t exist.");
             }
+            eventPublisher.publishEvent(new FriendshipChangedEvent(FriendshipChangedEvent.Type.DELETED, userId1, userId2));
         }
     }
 
@@ -116,6 +220,73 @@ public class UserService {
             throw new UserNotFoundException("Cannot find the user with this id.");
         }
         return friendshipRepository.getAllFriendshipsByUserId(userId);
-    } 
+    }
+
+    // Sorted ids of the user's friends, from FriendGraphIndex once it is loaded, otherwise from the database.
+    public long[] getFriendIds(Long userId){
+        if (getUserResponseById(userId).isEmpty()) {
+            throw new UserNotFoundException("Cannot find the user with this id.");
+        }
+        if (friendGraphIndex.isReady()) {
+            return friendGraphIndex.friendIds(userId);
+        }
+        return friendshipRepository.findFriendIds(userId).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    // Intersection of the two sorted friend lists, never a self-join on friendship.
+    public long[] getMutualFriendIds(Long userId1, Long userId2){
+        return mutualFriends(userId1, userId2, true).ids();
+    }
+
+    public int countMutualFriends(Long userId1, Long userId2){
+        return mutualFriends(userId1, userId2, false).count();
+    }
+
+    private MutualFriends mutualFriends(Long userId1, Long userId2, boolean withIds){
+        if (getUserResponseById(userId1).isEmpty() || getUserResponseById(userId2).isEmpty()) {
+            throw new UserNotFoundException("User with this id doesn`t exist.");
+        }
+        long[] friends1;
+        int from1;
+        int to1;
+        long[] friends2;
+        int from2;
+        int to2;
+        if (friendGraphIndex.isReady()) {
+            // views on the index arrays, nothing is copied
+            FriendGraphIndex.Range range1 = friendGraphIndex.neighbours(userId1);
+            FriendGraphIndex.Range range2 = friendGraphIndex.neighbours(userId2);
+            friends1 = range1.ids();
+            from1 = range1.from();
+            to1 = range1.to();
+            friends2 = range2.ids();
+            from2 = range2.from();
+            to2 = range2.to();
+        } else {
+            friends1 = friendshipRepository.findFriendIds(userId1).stream().mapToLong(Long::longValue).toArray();
+            from1 = 0;
+            to1 = friends1.length;
+            friends2 = friendshipRepository.findFriendIds(userId2).stream().mapToLong(Long::longValue).toArray();
+            from2 = 0;
+            to2 = friends2.length;
+        }
+        if (withIds) {
+            long[] ids = SortedIntersection.intersect(friends1, from1, to1, friends2, from2, to2);
+            return new MutualFriends(ids, ids.length);
+        }
+        return new MutualFriends(null, SortedIntersection.count(friends1, from1, to1, friends2, from2, to2));
+    }
+
+    private record MutualFriends(long[] ids, int count) {
+    }
+
+    // Friends of friends ranked by mutual friends; only from FriendGraphIndex, there is no database fallback.
+    public List<FriendRecommendation> getFriendRecommendations(Long userId, Integer limit){
+        if (getUserResponseById(userId).isEmpty()) {
+            throw new UserNotFoundException("Cannot find the user with this id.");
+        }
+        int size = limit == null ? DEFAULT_RECOMMENDATIONS : Math.min(Math.max(limit, 1), MAX_RECOMMENDATIONS);
+        return friendRecommender.recommend(userId, size);
+    }
 
 }
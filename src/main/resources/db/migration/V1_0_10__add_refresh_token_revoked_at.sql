@@ -0,0 +1,8 @@
+-- When a refresh token was revoked, so revoked rows can be purged after a retention period
+-- instead of staying until they expire. Both indexes serve the scheduled purge.
+ALTER TABLE refresh_token ADD COLUMN IF NOT EXISTS revoked_at TIMESTAMP;
+
+UPDATE refresh_token SET revoked_at = LOCALTIMESTAMP WHERE revoked AND revoked_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS refresh_token_expires_at_idx ON refresh_token (expires_at);
+CREATE INDEX IF NOT EXISTS refresh_token_revoked_at_idx ON refresh_token (revoked_at) WHERE revoked_at IS NOT NULL;
@@ -0,0 +1,8 @@
+-- When token_version was last bumped, so the token version registry only loads the users
+-- that changed within one token lifetime instead of every user that ever changed.
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS token_version_changed_at TIMESTAMP;
+
+UPDATE app_user SET token_version_changed_at = LOCALTIMESTAMP WHERE token_version > 0 AND token_version_changed_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS app_user_token_version_changed_at_idx ON app_user (token_version_changed_at)
+    WHERE token_version_changed_at IS NOT NULL;
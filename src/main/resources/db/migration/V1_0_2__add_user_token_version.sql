@@ -0,0 +1,3 @@
+-- Incremented whenever a user changes, so tokens issued before the change can be rejected
+-- without loading the user on every request.
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS token_version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Access tokens revoked before their expiry, identified by their "jti" claim.
+-- Rows can be deleted once the token has expired anyway.
+CREATE TABLE IF NOT EXISTS revoked_token (
+    token_id VARCHAR(64) PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS revoked_token_expires_at_idx ON revoked_token (expires_at);
@@ -0,0 +1,10 @@
+-- Lower-cased, trimmed copy of email used by every login and authenticated request,
+-- so case variants find the same user through a unique index.
+-- The unique index fails to build if two existing users differ only by case; merge them first.
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS normalized_email VARCHAR(255);
+
+UPDATE app_user SET normalized_email = LOWER(TRIM(email)) WHERE normalized_email IS NULL;
+
+ALTER TABLE app_user ALTER COLUMN normalized_email SET NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS app_user_normalized_email_idx ON app_user (normalized_email);
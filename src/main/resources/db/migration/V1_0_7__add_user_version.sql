@@ -0,0 +1,2 @@
+-- Optimistic locking: every update is a single UPDATE ... WHERE id = ? AND version = ? that also bumps it.
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
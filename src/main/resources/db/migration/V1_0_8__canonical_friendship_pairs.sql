@@ -0,0 +1,20 @@
+-- Every friendship is stored once, as (smaller id, larger id); requester_id keeps who asked.
+-- The unique (user_id1, user_id2) index answers pair lookups and friends-by-user_id1,
+-- friendship_user_id2_idx answers friends-by-user_id2, both without touching the table for the ids.
+ALTER TABLE friendship
+    ALTER COLUMN user_id1 TYPE BIGINT,
+    ALTER COLUMN user_id2 TYPE BIGINT;
+
+ALTER TABLE friendship ADD COLUMN IF NOT EXISTS requester_id BIGINT REFERENCES app_user(id);
+UPDATE friendship SET requester_id = user_id1 WHERE requester_id IS NULL;
+ALTER TABLE friendship ALTER COLUMN requester_id SET NOT NULL;
+
+UPDATE friendship SET user_id1 = user_id2, user_id2 = user_id1 WHERE user_id1 > user_id2;
+
+-- a pair stored in both orderings becomes a duplicate: keep the oldest row
+DELETE FROM friendship f USING friendship g
+    WHERE f.user_id1 = g.user_id1 AND f.user_id2 = g.user_id2 AND f.id > g.id;
+
+ALTER TABLE friendship ADD CONSTRAINT friendship_canonical_pair CHECK (user_id1 <= user_id2);
+ALTER TABLE friendship ADD CONSTRAINT friendship_user_pair_key UNIQUE (user_id1, user_id2);
+CREATE INDEX IF NOT EXISTS friendship_user_id2_idx ON friendship (user_id2, user_id1);
@@ -0,0 +1,9 @@
+-- Users deleted within the last access token lifetime. Their tokens are rejected in claims-only mode,
+-- and this table lets a restarted node (or one that missed the DELETED event) rebuild that list.
+-- Rows older than one token lifetime are purged.
+CREATE TABLE IF NOT EXISTS deleted_user (
+    user_id BIGINT PRIMARY KEY,
+    deleted_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS deleted_user_deleted_at_idx ON deleted_user (deleted_at);
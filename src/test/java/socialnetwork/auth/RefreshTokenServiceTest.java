@@ -0,0 +1,152 @@
+package socialnetwork.auth;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import socialnetwork.config.JwtService;
+import socialnetwork.domain.RefreshToken;
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.exceptions.InvalidRefreshTokenException;
+import socialnetwork.repository.RefreshTokenRepository;
+import socialnetwork.repository.UserRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private RefreshTokenService refreshTokenService;
+
+    private final User user = User.builder().id(1L).email("user1@example.com").password("password").role(Role.USER).build();
+
+    @BeforeEach
+    void setup() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository, new JwtService(),
+            Duration.ofDays(30), Duration.ofDays(7));
+    }
+
+    @Test
+    void testIssue_StoresOnlyTheHash() throws Exception {
+        String token = refreshTokenService.issue(user);
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertEquals(1L, saved.getValue().getUserId());
+        assertArrayEquals(sha256(token), saved.getValue().getTokenHash());
+        assertFalse(saved.getValue().isRevoked());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now().plusDays(29)));
+    }
+
+    @Test
+    void testRefresh_RotatesTheToken() throws Exception {
+        String token = "presented-token";
+        byte[] tokenHash = sha256(token);
+        when(refreshTokenRepository.findByTokenHash(argThat(hash -> Arrays.equals(hash, tokenHash))))
+            .thenReturn(Optional.of(storedToken(false, LocalDateTime.now().plusDays(1))));
+        when(refreshTokenRepository.revokeIfActive(7L)).thenReturn(1);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        AuthenticationResponse response = refreshTokenService.refresh(token);
+
+        assertNotNull(response.getToken());
+        assertNotNull(response.getRefreshToken());
+        assertNotEquals(token, response.getRefreshToken());
+        verify(refreshTokenRepository).revokeIfActive(7L);
+        verify(refreshTokenRepository).save(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).revokeAllByUserId(anyLong());
+    }
+
+    @Test
+    void testRefresh_ReusedTokenRevokesTheWholeFamily() {
+        when(refreshTokenRepository.findByTokenHash(any()))
+            .thenReturn(Optional.of(storedToken(true, LocalDateTime.now().plusDays(1))));
+
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+            () -> refreshTokenService.refresh("reused-token"));
+
+        assertEquals("Refresh token was already used.", ex.getMessage());
+        verify(refreshTokenRepository).revokeAllByUserId(1L);
+        verify(userRepository, never()).findById(anyLong());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void testRefresh_ConcurrentUseRevokesTheWholeFamily() {
+        when(refreshTokenRepository.findByTokenHash(any()))
+            .thenReturn(Optional.of(storedToken(false, LocalDateTime.now().plusDays(1))));
+        // another request rotated it between the read and the update
+        when(refreshTokenRepository.revokeIfActive(7L)).thenReturn(0);
+
+        assertThrows(InvalidRefreshTokenException.class, () -> refreshTokenService.refresh("raced-token"));
+
+        verify(refreshTokenRepository).revokeAllByUserId(1L);
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    void testRefresh_ExpiredToken() {
+        when(refreshTokenRepository.findByTokenHash(any()))
+            .thenReturn(Optional.of(storedToken(false, LocalDateTime.now().minusMinutes(1))));
+
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+            () -> refreshTokenService.refresh("expired-token"));
+
+        assertEquals("Refresh token expired.", ex.getMessage());
+        verify(refreshTokenRepository, never()).revokeIfActive(anyLong());
+        verify(refreshTokenRepository, never()).revokeAllByUserId(anyLong());
+    }
+
+    @Test
+    void testRefresh_UnknownToken() {
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Optional.empty());
+
+        InvalidRefreshTokenException ex = assertThrows(InvalidRefreshTokenException.class,
+            () -> refreshTokenService.refresh("unknown-token"));
+
+        assertEquals("Invalid refresh token.", ex.getMessage());
+    }
+
+    @Test
+    void testPurge_KeepsRevokedTokensForTheRetention() {
+        refreshTokenService.purge();
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> revokedBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(refreshTokenRepository, times(1)).deleteExpiredOrRevokedBefore(now.capture(), revokedBefore.capture());
+        assertEquals(Duration.ofDays(7), Duration.between(revokedBefore.getValue(), now.getValue()));
+        assertFalse(now.getValue().isAfter(LocalDateTime.now()));
+    }
+
+    private static RefreshToken storedToken(boolean revoked, LocalDateTime expiresAt) {
+        return RefreshToken.builder().id(7L).userId(1L).expiresAt(expiresAt).revoked(revoked).build();
+    }
+
+    private static byte[] sha256(String token) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,119 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import socialnetwork.exceptions.PasswordHashingUnavailableException;
+
+public class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void teardown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.shutdown();
+        }
+    }
+
+    @Test
+    void testEncodeAndMatches_RunOnThePool() {
+        encoder = new BoundedPasswordEncoder(new PrefixEncoder(), 1, 1, Duration.ofSeconds(5));
+
+        assertEquals("hashed:secret", encoder.encode("secret"));
+        assertTrue(encoder.matches("secret", "hashed:secret"));
+        assertFalse(encoder.matches("other", "hashed:secret"));
+    }
+
+    @Test
+    void testEncode_QueueFullIsRejectedStraightAway() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofSeconds(5));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        encoder.bindTo(meterRegistry);
+        // one call holds the only thread, the next one waits in the queue
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        waitForQueueDepth(1);
+
+        PasswordHashingUnavailableException ex = assertThrows(PasswordHashingUnavailableException.class,
+            () -> encoder.encode("third"));
+
+        assertEquals("Too many password checks in progress, try again later.", ex.getMessage());
+        assertEquals(1.0, meterRegistry.get("auth.password-hashing.rejected").counter().count());
+        release.countDown();
+        assertEquals("hashed:first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed:second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testEncode_TimesOut() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, Duration.ofMillis(100));
+
+        PasswordHashingUnavailableException ex = assertThrows(PasswordHashingUnavailableException.class,
+            () -> encoder.encode("secret"));
+
+        assertEquals("Password hashing timed out.", ex.getMessage());
+    }
+
+    @Test
+    void testEncode_DelegateExceptionPropagates() {
+        PasswordEncoder failing = new PrefixEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                throw new IllegalArgumentException("bad password");
+            }
+        };
+        encoder = new BoundedPasswordEncoder(failing, 1, 1, Duration.ofSeconds(5));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> encoder.encode("secret"));
+        assertEquals("bad password", ex.getMessage());
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (encoder.getQueueDepth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "the call was never queued");
+            Thread.sleep(10);
+        }
+    }
+
+    private static class PrefixEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    // blocks every call until the test releases it
+    private class BlockingEncoder extends PrefixEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+            return super.encode(rawPassword);
+        }
+    }
+}
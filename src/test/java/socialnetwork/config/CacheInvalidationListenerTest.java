@@ -0,0 +1,182 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.postgresql.PGConnection;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import socialnetwork.service.FriendshipChangedEvent;
+import socialnetwork.service.UserChangedEvent;
+
+// The payload written by CacheInvalidationPublisher on one node, read back by the listener of another.
+public class CacheInvalidationListenerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JdbcTemplate jdbcTemplate;
+    private CacheInvalidationPublisher sendingNode;
+    private ApplicationEventPublisher eventPublisher;
+    private CacheInvalidationListener receivingNode;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        sendingNode = new CacheInvalidationPublisher(jdbcTemplate, objectMapper);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        receivingNode = listener(new CacheInvalidationPublisher(jdbcTemplate, objectMapper));
+    }
+
+    @Test
+    void testUserChanged_RoundTrip() {
+        sendingNode.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "user1@example.com", 3));
+
+        receivingNode.dispatch(sentPayload());
+
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(UserChangedEvent.Type.UPDATED, event.getValue().getType());
+        assertEquals(1L, event.getValue().getUserId());
+        assertEquals("user1@example.com", event.getValue().getEmail());
+        assertEquals(3, event.getValue().getTokenVersion());
+        assertTrue(event.getValue().isRemote());
+    }
+
+    @Test
+    void testUserChanged_NullFieldsStayNull() {
+        sendingNode.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.DELETED, 1L, null, null));
+
+        receivingNode.dispatch(sentPayload());
+
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertNull(event.getValue().getEmail());
+        assertNull(event.getValue().getTokenVersion());
+    }
+
+    @Test
+    void testFriendshipChanged_RoundTrip() {
+        sendingNode.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.CREATED, 1L, 2L));
+
+        receivingNode.dispatch(sentPayload());
+
+        ArgumentCaptor<FriendshipChangedEvent> event = ArgumentCaptor.forClass(FriendshipChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(FriendshipChangedEvent.Type.CREATED, event.getValue().getType());
+        assertEquals(1L, event.getValue().getUserId1());
+        assertEquals(2L, event.getValue().getUserId2());
+        assertTrue(event.getValue().isRemote());
+    }
+
+    @Test
+    void testTokenRevoked_RoundTrip() {
+        sendingNode.onTokenRevoked(new TokenRevokedEvent("jti-1", false));
+
+        receivingNode.dispatch(sentPayload());
+
+        ArgumentCaptor<TokenRevokedEvent> event = ArgumentCaptor.forClass(TokenRevokedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("jti-1", event.getValue().getTokenId());
+        assertTrue(event.getValue().isRemote());
+    }
+
+    @Test
+    void testOwnAndRemoteEventsAreNotEchoed() {
+        // a remote event is not sent on again
+        sendingNode.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "user1@example.com", 3, true));
+        verifyNoInteractions(jdbcTemplate);
+
+        // and a node skips what it sent itself
+        sendingNode.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "user1@example.com", 3));
+        listener(sendingNode).dispatch(sentPayload());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testMalformedPayloadsAreIgnored() {
+        receivingNode.dispatch("not json");
+        receivingNode.dispatch("{\"node\": \"other\", \"kind\": \"user\", \"type\": \"UNKNOWN\"}");
+        receivingNode.dispatch("{\"node\": \"other\", \"kind\": \"unknown\"}");
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testReconnect_FlushesEveryCache() throws Exception {
+        Deque<Connection> connections = new ArrayDeque<>();
+        connections.add(connection(true));
+        connections.add(connection(false));
+        CacheInvalidationListener listener = new CacheInvalidationListener(new DataSourceProperties(),
+                sendingNode, eventPublisher, objectMapper, Duration.ofMillis(10)) {
+            @Override
+            Connection connect() throws SQLException {
+                Connection connection = connections.poll();
+                if (connection == null) {
+                    throw new SQLException("no more connections");
+                }
+                return connection;
+            }
+        };
+
+        listener.start();
+        try {
+            // notifications sent while the first connection was down are lost: caches start over
+            verify(eventPublisher, timeout(5000)).publishEvent(any(CacheFlushEvent.class));
+        } finally {
+            listener.stop();
+        }
+    }
+
+    private CacheInvalidationListener listener(CacheInvalidationPublisher nodePublisher) {
+        return new CacheInvalidationListener(new DataSourceProperties(), nodePublisher, eventPublisher, objectMapper,
+            Duration.ofSeconds(1));
+    }
+
+    private String sentPayload() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).queryForObject(eq("SELECT pg_notify(?, ?)"), eq(Object.class),
+            eq(CacheInvalidationPublisher.CHANNEL), payload.capture());
+        return (String) payload.getValue();
+    }
+
+    // a connection whose first poll fails, or one that keeps polling without notifications
+    private static Connection connection(boolean failing) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        if (failing) {
+            when(pgConnection.getNotifications(anyInt())).thenThrow(new SQLException("connection reset"));
+        } else {
+            when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ex) {
+                    // stop() interrupts the listener thread
+                }
+                return null;
+            });
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,120 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.service.UserChangedEvent;
+
+public class CachingUserDetailsServiceTest {
+
+    private Map<String, User> users;
+    private AtomicInteger loads;
+    private CachingUserDetailsService service;
+
+    @BeforeEach
+    void setup() {
+        users = new HashMap<>();
+        users.put("user1@example.com", user(1L, "user1@example.com"));
+        users.put("user2@example.com", user(2L, "user2@example.com"));
+        loads = new AtomicInteger();
+        service = new CachingUserDetailsService(username -> {
+            loads.incrementAndGet();
+            User user = users.get(username);
+            if (user == null) {
+                throw new UsernameNotFoundException("User not Found!");
+            }
+            return user;
+        }, 100, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void testLoadUserByUsername_CachedUnderTheNormalizedEmail() {
+        UserDetails first = service.loadUserByUsername("user1@example.com");
+        UserDetails second = service.loadUserByUsername(" USER1@Example.com ");
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testLoadUserByUsername_UnknownEmailIsNotCached() {
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("missing@example.com"));
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("missing@example.com"));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testEvict_ByEmail() {
+        service.loadUserByUsername("user1@example.com");
+
+        service.evict("USER1@example.com");
+        service.loadUserByUsername("user1@example.com");
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testOnUserChanged_EmailChangeEvictsTheOldEntryById() {
+        service.loadUserByUsername("user1@example.com");
+        service.loadUserByUsername("user2@example.com");
+        users.put("renamed@example.com", users.remove("user1@example.com"));
+
+        // the event only carries the new email, the old entry is found through the id
+        service.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "renamed@example.com", 1));
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("user1@example.com"));
+        service.loadUserByUsername("user2@example.com");
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testOnUserChanged_DeletedWithoutEmail() {
+        service.loadUserByUsername("user1@example.com");
+
+        service.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.DELETED, 1L, null, null));
+        service.loadUserByUsername("user1@example.com");
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testEvictById_AfterEvictByEmailDoesNotTouchTheNewEntry() {
+        service.loadUserByUsername("user1@example.com");
+        service.evict("user1@example.com");
+        service.evictById(1L);
+
+        service.loadUserByUsername("user1@example.com");
+        service.evictById(1L);
+        service.loadUserByUsername("user1@example.com");
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testInvalidateAll() {
+        service.loadUserByUsername("user1@example.com");
+        service.loadUserByUsername("user2@example.com");
+
+        service.invalidateAll();
+        service.loadUserByUsername("user1@example.com");
+        service.loadUserByUsername("user2@example.com");
+
+        assertEquals(4, loads.get());
+    }
+
+    private static User user(Long id, String email) {
+        return User.builder().id(id).email(email).password("password").role(Role.USER).build();
+    }
+}
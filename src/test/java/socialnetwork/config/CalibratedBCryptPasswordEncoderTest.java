@@ -0,0 +1,52 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+public class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    void testCalibrate_NothingFitsTheBudgetGivesTheMinimum() {
+        assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(Duration.ZERO, 4, 6).getStrength());
+    }
+
+    @Test
+    void testCalibrate_EverythingFitsTheBudgetGivesTheMaximum() {
+        assertEquals(5, CalibratedBCryptPasswordEncoder.calibrate(Duration.ofHours(1), 4, 5).getStrength());
+    }
+
+    @Test
+    void testCalibrate_HashesWithTheChosenCost() {
+        CalibratedBCryptPasswordEncoder encoder = CalibratedBCryptPasswordEncoder.calibrate(Duration.ofHours(1), 4, 4);
+
+        String hash = encoder.encode("secret");
+
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("secret", hash));
+    }
+
+    @Test
+    void testUpgradeEncoding_OnlyWeakerHashes() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+        // a node calibrated to a higher cost wrote this one: it is not downgraded
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(7).encode("secret")));
+        assertTrue(encoder.upgradeEncoding("$2b$05$abcdefghijklmnopqrstuu"));
+        assertTrue(encoder.upgradeEncoding("$2y$05$abcdefghijklmnopqrstuu"));
+    }
+
+    @Test
+    void testUpgradeEncoding_NotBCrypt() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6);
+
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding(""));
+        assertFalse(encoder.upgradeEncoding("plain-text-password"));
+    }
+}
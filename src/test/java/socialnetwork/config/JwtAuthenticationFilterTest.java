@@ -0,0 +1,120 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.repository.UserRepository;
+import socialnetwork.service.UserChangedEvent;
+
+// The claims-only path: the principal comes from the token, checked against the token version registry.
+public class JwtAuthenticationFilterTest {
+
+    private final JwtService jwtService = new JwtService();
+    private final User user = User.builder().id(1L).email("user1@example.com").password("password").role(Role.ADMIN).tokenVersion(0).build();
+
+    private UserRepository userRepository;
+    private UserDetailsService userDetailsService;
+    private TokenVersionRegistry tokenVersionRegistry;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setup() {
+        userRepository = mock(UserRepository.class);
+        userDetailsService = mock(UserDetailsService.class);
+        tokenVersionRegistry = new TokenVersionRegistry(userRepository);
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, VerifiedTokenCache.disabled(),
+            tokenVersionRegistry, mock(TokenRevocationService.class), true);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testClaimsOnly_CurrentTokenAuthenticatesWithoutTheDatabase() throws Exception {
+        MockFilterChain chain = filter(jwtService.generateToken(user));
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        assertEquals("user1@example.com", ((User) authentication.getPrincipal()).getEmail());
+        assertTrue(authentication.getAuthorities().stream().anyMatch(authority -> authority.getAuthority().equals("ADMIN")));
+        assertNotNull(chain.getRequest());
+        verify(userDetailsService, never()).loadUserByUsername(any());
+    }
+
+    @Test
+    void testClaimsOnly_VersionMismatchIsRejected() throws Exception {
+        String token = jwtService.generateToken(user);
+        tokenVersionRegistry.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "user1@example.com", 1));
+
+        MockFilterChain chain = filter(token);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void testClaimsOnly_DeletedUserTombstoneIsRejected() throws Exception {
+        when(userRepository.findTokenVersionsChangedSince(any())).thenReturn(List.of());
+        when(userRepository.findUserIdsDeletedSince(any())).thenReturn(List.of(1L));
+        tokenVersionRegistry.load();
+
+        MockFilterChain chain = filter(jwtService.generateToken(user));
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    void testClaimsOnly_UnknownOrMissingRoleIsAnInvalidToken() throws Exception {
+        MockFilterChain unknown = filter(jwtService.generateToken(
+            Map.of(JwtService.USER_ID_CLAIM, 1L, JwtService.ROLE_CLAIM, "ROOT", JwtService.USER_VERSION_CLAIM, 0), user));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(unknown.getRequest());
+
+        MockFilterChain missing = filter(jwtService.generateToken(
+            Map.of(JwtService.USER_ID_CLAIM, 1L, JwtService.USER_VERSION_CLAIM, 0), user));
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNotNull(missing.getRequest());
+        verify(userDetailsService, never()).loadUserByUsername(any());
+    }
+
+    @Test
+    void testClaimsOnly_TokenWithoutUserIdFallsBackToTheDatabase() throws Exception {
+        when(userDetailsService.loadUserByUsername("user1@example.com")).thenReturn(user);
+
+        filter(jwtService.generateToken(Map.of(), user));
+
+        assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(userDetailsService).loadUserByUsername("user1@example.com");
+    }
+
+    private MockFilterChain filter(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/users/getUser/1");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+}
@@ -1,7 +1,16 @@
 package socialnetwork.config;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
 import org.junit.Test;
 
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+
 public class JwtServiceTest {
 
     @Test
@@ -9,4 +18,27 @@ public class JwtServiceTest {
         JwtService jwtService = new JwtService();
         jwtService.toString();
     }
+
+    @Test
+    public void testVerify_ValidToken(){
+        JwtService jwtService = new JwtService();
+        User user = User.builder().email("sergiu@nia.com").password("12345678").role(Role.USER).build();
+        String token = jwtService.generateToken(user);
+
+        Optional<VerifiedToken> verifiedToken = jwtService.verify(token);
+
+        assertTrue(verifiedToken.isPresent());
+        assertEquals("sergiu@nia.com", verifiedToken.get().getUsername());
+        assertTrue(jwtService.isTokenValid(verifiedToken.get(), user));
+    }
+
+    @Test
+    public void testVerify_TamperedToken(){
+        JwtService jwtService = new JwtService();
+        User user = User.builder().email("sergiu@nia.com").password("12345678").role(Role.USER).build();
+        String token = jwtService.generateToken(user);
+
+        assertFalse(jwtService.verify(token + "x").isPresent());
+        assertFalse(jwtService.verify("not-a-jwt").isPresent());
+    }
 }
@@ -0,0 +1,76 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LoginThrottleTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setup() {
+        // 2 attempts per account and 3 per address every minute
+        loginThrottle = new LoginThrottle(2, 3, Duration.ofMinutes(1), 100, clock::get);
+    }
+
+    @Test
+    void testTryAcquireForAddress_BurstThenRefill() {
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.2"));
+
+        clock.addAndGet(Duration.ofSeconds(20).toNanos());
+
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+    }
+
+    @Test
+    void testTryAcquireForAccount_EmailIsNormalized() {
+        assertTrue(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAccount(" USER1@Example.com ", "10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertTrue(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void testTryAcquireForAccount_OtherAddressesAreNotLockedOut() {
+        assertTrue(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.1"));
+
+        // the owner logging in from elsewhere still gets through
+        assertTrue(loginThrottle.tryAcquireForAccount("user1@example.com", "10.0.0.2"));
+    }
+
+    @Test
+    void testIdleBucketsExpireFull() {
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.tryAcquireForAddress("10.0.0.1");
+        }
+
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertTrue(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+        assertFalse(loginThrottle.tryAcquireForAddress("10.0.0.1"));
+    }
+
+    @Test
+    void testGetRetryAfterSeconds_TimeForOneTokenOfTheSmallerBucket() {
+        assertEquals(30, loginThrottle.getRetryAfterSeconds());
+    }
+}
@@ -0,0 +1,126 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+
+public class LoginThrottlingFilterTest {
+
+    private static final String BODY = "{\"email\": \"user1@example.com\", \"password\": \"password\"}";
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void testAddressOverTheLimitIs429() throws Exception {
+        LoginThrottlingFilter filter = filter(5, 1);
+        filter.doFilter(login(BODY, "10.0.0.1"), new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(login(BODY, "10.0.0.1"), response, chain);
+
+        assertEquals(429, response.getStatus());
+        assertEquals("60", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void testAccountOverTheLimitIs429() throws Exception {
+        LoginThrottlingFilter filter = filter(1, 10);
+        filter.doFilter(login(BODY, "10.0.0.1"), new MockHttpServletResponse(), new MockFilterChain());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(login(BODY, "10.0.0.1"), response, new MockFilterChain());
+        assertEquals(429, response.getStatus());
+
+        MockFilterChain otherAccount = new MockFilterChain();
+        filter.doFilter(login("{\"email\": \"user2@example.com\"}", "10.0.0.1"), new MockHttpServletResponse(), otherAccount);
+        assertNotNull(otherAccount.getRequest());
+    }
+
+    @Test
+    void testBodyIsReplayedToTheController() throws Exception {
+        AtomicReference<String> replayed = new AtomicReference<>();
+
+        filter(5, 5).doFilter(login(BODY, "10.0.0.1"), new MockHttpServletResponse(),
+            (request, response) -> replayed.set(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8)));
+
+        assertEquals(BODY, replayed.get());
+    }
+
+    @Test
+    void testBodyCanBeReadAsynchronously() throws Exception {
+        ByteArrayOutputStream replayed = new ByteArrayOutputStream();
+        AtomicBoolean allRead = new AtomicBoolean();
+
+        filter(5, 5).doFilter(login(BODY, "10.0.0.1"), new MockHttpServletResponse(), (request, response) -> {
+            ServletInputStream input = request.getInputStream();
+            input.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[16];
+                    int read;
+                    while (input.isReady() && !input.isFinished() && (read = input.read(buffer)) != -1) {
+                        replayed.write(buffer, 0, read);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allRead.set(true);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    fail(throwable);
+                }
+            });
+        });
+
+        assertEquals(BODY, replayed.toString(StandardCharsets.UTF_8));
+        assertTrue(allRead.get());
+    }
+
+    @Test
+    void testOtherRequestsAreNotThrottled() throws Exception {
+        LoginThrottlingFilter filter = filter(1, 1);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/getUser/1");
+        request.setServletPath("/api/users/getUser/1");
+
+        for (int i = 0; i < 3; i++) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+        }
+    }
+
+    private LoginThrottlingFilter filter(int accountCapacity, int addressCapacity) {
+        LoginThrottle loginThrottle = new LoginThrottle(accountCapacity, addressCapacity, Duration.ofMinutes(1), 100, clock::get);
+        return new LoginThrottlingFilter(loginThrottle, new ObjectMapper());
+    }
+
+    private static MockHttpServletRequest login(String body, String clientAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/auth/authenticate");
+        request.setServletPath("/api/v1/auth/authenticate");
+        request.setRemoteAddr(clientAddress);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
@@ -0,0 +1,62 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void testTryConsume_FullBurstThenEmpty() {
+        TokenBucket bucket = new TokenBucket(3, 3000, clock::get);
+
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+
+    @Test
+    void testTryConsume_OneTokenBackPerRefillInterval() {
+        TokenBucket bucket = new TokenBucket(3, 3000, clock::get);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryConsume();
+        }
+
+        clock.addAndGet(999);
+        assertFalse(bucket.tryConsume());
+        clock.addAndGet(1);
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+
+    @Test
+    void testTryConsume_IdleTimeNeverGivesMoreThanTheCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 3000, clock::get);
+        bucket.tryConsume();
+
+        clock.addAndGet(30_000);
+
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+    }
+
+    @Test
+    void testTryConsume_RejectedAttemptsDoNotUseTokens() {
+        TokenBucket bucket = new TokenBucket(1, 1000, clock::get);
+        assertTrue(bucket.tryConsume());
+        for (int i = 0; i < 10; i++) {
+            assertFalse(bucket.tryConsume());
+        }
+
+        clock.addAndGet(1000);
+
+        assertTrue(bucket.tryConsume());
+    }
+}
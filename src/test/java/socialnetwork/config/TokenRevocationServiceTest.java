@@ -0,0 +1,127 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import io.jsonwebtoken.Jwts;
+import socialnetwork.domain.RevokedToken;
+import socialnetwork.repository.RevokedTokenRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setup() {
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, eventPublisher, 1000);
+    }
+
+    @Test
+    void testIsRevoked_UnknownTokenNeverHitsTheDatabase() {
+        assertFalse(tokenRevocationService.isRevoked(token("jti-1")));
+
+        verify(revokedTokenRepository, never()).existsById(anyString());
+    }
+
+    @Test
+    void testRevoke_ByTokenId() {
+        Date expiration = new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis());
+        VerifiedToken token = token("jti-1", expiration);
+
+        tokenRevocationService.revoke(token);
+
+        ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(revokedTokenRepository).save(saved.capture());
+        assertEquals("jti-1", saved.getValue().getTokenId());
+        assertEquals(LocalDateTime.ofInstant(expiration.toInstant(), ZoneId.systemDefault()), saved.getValue().getExpiresAt());
+        ArgumentCaptor<TokenRevokedEvent> event = ArgumentCaptor.forClass(TokenRevokedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals("jti-1", event.getValue().getTokenId());
+        assertFalse(event.getValue().isRemote());
+
+        // the filter now says "maybe", and the table confirms it
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+        assertTrue(tokenRevocationService.isRevoked(token));
+    }
+
+    @Test
+    void testRevoke_TokenWithoutIdIsIgnored() {
+        VerifiedToken token = token(null);
+
+        tokenRevocationService.revoke(token);
+
+        assertFalse(tokenRevocationService.isRevoked(token));
+        verify(revokedTokenRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testOnTokenRevoked_RemoteRevocationIsAddedToTheFilter() {
+        when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+
+        tokenRevocationService.onTokenRevoked(new TokenRevokedEvent("jti-1", true));
+
+        assertTrue(tokenRevocationService.isRevoked(token("jti-1")));
+    }
+
+    @Test
+    void testRebuild_LoadsRevokedTokensFromTheTable() {
+        when(revokedTokenRepository.findAllTokenIds()).thenReturn(List.of("jti-1", "jti-2"));
+        when(revokedTokenRepository.existsById("jti-2")).thenReturn(true);
+
+        tokenRevocationService.rebuild();
+
+        assertTrue(tokenRevocationService.isRevoked(token("jti-2")));
+    }
+
+    @Test
+    void testSweep_ExpiredRevocationsLeaveTheFilter() {
+        tokenRevocationService.revoke(token("jti-1"));
+        // the expired row is deleted, so the rebuilt filter no longer has it
+        when(revokedTokenRepository.findAllTokenIds()).thenReturn(List.of());
+
+        tokenRevocationService.sweep();
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(revokedTokenRepository).deleteExpired(now.capture());
+        assertFalse(now.getValue().isAfter(LocalDateTime.now()));
+        assertFalse(tokenRevocationService.isRevoked(token("jti-1")));
+        verify(revokedTokenRepository, never()).existsById(anyString());
+    }
+
+    private static VerifiedToken token(String tokenId) {
+        return token(tokenId, new Date(System.currentTimeMillis() + Duration.ofHours(1).toMillis()));
+    }
+
+    private static VerifiedToken token(String tokenId, Date expiration) {
+        return new VerifiedToken("token-" + tokenId, Jwts.claims()
+            .setId(tokenId)
+            .setSubject("user1@example.com")
+            .setExpiration(expiration));
+    }
+}
@@ -0,0 +1,88 @@
+package socialnetwork.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    void testPutAndGet_SameTokenIsServedFromTheCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(5));
+        VerifiedToken token = token("token-1", Duration.ofHours(1));
+
+        cache.put(token);
+
+        assertSame(token, cache.get("token-1").orElseThrow());
+        assertTrue(cache.get("token-2").isEmpty());
+    }
+
+    @Test
+    void testPut_ExpiredTokenIsNotStored() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(5));
+
+        cache.put(token("token-1", Duration.ofSeconds(-1)));
+
+        assertTrue(cache.get("token-1").isEmpty());
+    }
+
+    @Test
+    void testGet_EntryNeverOutlivesTheToken() throws InterruptedException {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(5));
+        cache.put(token("token-1", Duration.ofMillis(200)));
+        assertTrue(cache.get("token-1").isPresent());
+
+        Thread.sleep(300);
+
+        assertTrue(cache.get("token-1").isEmpty());
+    }
+
+    @Test
+    void testGet_EntryNeverOutlivesTheMaximumTtl() throws InterruptedException {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMillis(200));
+        cache.put(token("token-1", Duration.ofHours(1)));
+        assertTrue(cache.get("token-1").isPresent());
+
+        Thread.sleep(300);
+
+        assertTrue(cache.get("token-1").isEmpty());
+    }
+
+    @Test
+    void testInvalidate() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100, Duration.ofMinutes(5));
+        cache.put(token("token-1", Duration.ofHours(1)));
+        cache.put(token("token-2", Duration.ofHours(1)));
+        cache.put(token("token-3", Duration.ofHours(1)));
+
+        cache.invalidate("token-1");
+        assertTrue(cache.get("token-1").isEmpty());
+        assertTrue(cache.get("token-2").isPresent());
+
+        cache.invalidateAll();
+        assertTrue(cache.get("token-2").isEmpty());
+        assertTrue(cache.get("token-3").isEmpty());
+    }
+
+    @Test
+    void testDisabled_NeverStoresAnything() {
+        VerifiedTokenCache cache = VerifiedTokenCache.disabled();
+
+        cache.put(token("token-1", Duration.ofHours(1)));
+
+        assertTrue(cache.get("token-1").isEmpty());
+    }
+
+    private static VerifiedToken token(String token, Duration expiresIn) {
+        Claims claims = Jwts.claims()
+            .setSubject("user1@example.com")
+            .setExpiration(new Date(System.currentTimeMillis() + expiresIn.toMillis()));
+        return new VerifiedToken(token, claims);
+    }
+}
@@ -1,10 +1,13 @@
 package socialnetwork.controller;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,7 +18,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -23,11 +25,18 @@ import org.springframework.test.web.servlet.MockMvc;
 import socialnetwork.domain.Friendship;
 import socialnetwork.domain.Role;
 import socialnetwork.domain.User;
+import socialnetwork.dto.UserPage;
+import socialnetwork.dto.UserResponse;
+import socialnetwork.dto.UserUpdateRequest;
+import socialnetwork.exceptions.StaleUserVersionException;
 import socialnetwork.exceptions.UserNotFoundException;
+import socialnetwork.service.UserExportService;
+import socialnetwork.service.UserImportService;
 import socialnetwork.service.UserService;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -52,6 +61,12 @@ public class UserControllerTest {
 
     @MockBean //create a mock of userService interface and inject it into the Spring context
     private UserService userService; 
+
+    @MockBean
+    private UserExportService userExportService;
+
+    @MockBean
+    private UserImportService userImportService;
     
     @Disabled()
     @Test
@@ -76,23 +91,23 @@ public class UserControllerTest {
         authorities = {"ADMIN"})
     void testGetAllUsers_WithUsers() throws Exception{
         //Arrange
-        User newUser1 = User.builder().email("test1@example.com").password("12345678").role(Role.USER).build();
-        User newUser2 = User.builder().email("test2@example.com").password("12345678").role(Role.USER).build();
-        User newUser3 = User.builder().email("test3@example.com").password("12345678").role(Role.USER).build();
-        User newUser4 = User.builder().email("test4@example.com").password("12345678").role(Role.USER).build();
-        List<User> userList = Arrays.asList(newUser1, newUser2, newUser3, newUser4);
-        when(userService.getAllUsers()).thenReturn(userList);
+        UserResponse newUser1 = new UserResponse(1L, "test1@example.com", Role.USER, 0L);
+        UserResponse newUser2 = new UserResponse(2L, "test2@example.com", Role.USER, 0L);
+        UserResponse newUser3 = new UserResponse(3L, "test3@example.com", Role.USER, 0L);
+        UserResponse newUser4 = new UserResponse(4L, "test4@example.com", Role.USER, 0L);
+        List<UserResponse> userList = Arrays.asList(newUser1, newUser2, newUser3, newUser4);
+        when(userService.getUsersPage(any(), any(), anyBoolean())).thenReturn(UserPage.<UserResponse>builder().items(userList).build());
 
         //Act and asert
         mockMvc.perform(get("/api/users/getAllUsers"))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$", hasSize(4)))  // $ of the json document
-            .andExpect(jsonPath("$[0].email").value(newUser1.getEmail()))
-            .andExpect(jsonPath("$[1].email").value("test2@example.com"))
-            .andExpect(jsonPath("$[2].password").value("12345678"))
-            .andExpect(jsonPath("$[3].role").value("USER"));
+            .andExpect(jsonPath("$.items", hasSize(4)))  // $ of the json document
+            .andExpect(jsonPath("$.items[0].email").value(newUser1.email()))
+            .andExpect(jsonPath("$.items[1].email").value("test2@example.com"))
+            .andExpect(jsonPath("$.items[2].password").doesNotExist())
+            .andExpect(jsonPath("$.items[3].role").value("USER"));
 
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getUsersPage(any(), any(), anyBoolean());
     }
     
 
@@ -102,15 +117,15 @@ public class UserControllerTest {
       authorities = {"ADMIN"})
     void testGetUserByEmail_WithNoUsers() throws Exception{
         //Arrange
-        List<User> userList = Arrays.asList();
-        when(userService.getAllUsers()).thenReturn(userList);
+        List<UserResponse> userList = Arrays.asList();
+        when(userService.getUsersPage(any(), any(), anyBoolean())).thenReturn(UserPage.<UserResponse>builder().items(userList).build());
         
         //Act and assert
         mockMvc.perform(get("/api/users/getAllUsers"))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$", hasSize(0)));
+            .andExpect(jsonPath("$.items", hasSize(0)));
         
-        verify(userService, times(1)).getAllUsers();
+        verify(userService, times(1)).getUsersPage(any(), any(), anyBoolean());
         
     }
     
@@ -120,16 +135,17 @@ public class UserControllerTest {
         authorities = {"ADMIN"})
     void testGetUserById_ExitingUser() throws Exception{
         Long userId = 1L;
-        User newUser = User.builder().id(userId).email("test@example.com").password("12345678").role(Role.USER).build();
-        when(userService.getUserByID(userId)).thenReturn(Optional.of(newUser));
+        UserResponse newUser = new UserResponse(userId, "test@example.com", Role.USER, 0L);
+        when(userService.getUserResponseById(userId)).thenReturn(Optional.of(newUser));
 
         //Act and assert
         mockMvc.perform(get("/api/users/getUserById/{userId}", userId))
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id").value(userId))
-            .andExpect(jsonPath("$.email").value("test@example.com"));
+            .andExpect(jsonPath("$.email").value("test@example.com"))
+            .andExpect(jsonPath("$.password").doesNotExist());
 
-        verify(userService, times(1)).getUserByID(userId);
+        verify(userService, times(1)).getUserResponseById(userId);
     }
 
     @Test
@@ -139,13 +155,13 @@ public class UserControllerTest {
     void testGetUserById_UserNotFound() throws Exception{
         //Arrange
         Long userId = 1L;
-        when(userService.getUserByID(userId)).thenReturn(Optional.empty());
+        when(userService.getUserResponseById(userId)).thenReturn(Optional.empty());
 
         //Act and assert
         mockMvc.perform(get("/api/users/getUserById/{userId}", userId))
             .andExpect(status().isNotFound());
 
-        verify(userService, times(1)).getUserByID(userId);
+        verify(userService, times(1)).getUserResponseById(userId);
     }
 
     @Test
@@ -155,18 +171,65 @@ public class UserControllerTest {
     void testUpdateUser() throws Exception {
         // Arrange
         Long userId = 1L;
-        User userToBeUpdated = User.builder().id(userId).email("oldUser@example.com").password("12345678").role(Role.USER).build();
-        User newUpdatedUser = User.builder().id(userId).email("updated@example.com").password("2345678").role(Role.USER).build();
-        when(userService.getUserByID(anyLong())).thenReturn(Optional.of(userToBeUpdated));
-        when(userService.updateUser(any(User.class))).thenReturn(newUpdatedUser);
+        UserResponse updatedUser = new UserResponse(userId, "updated@example.com", Role.USER, 4L);
+        when(userService.updateUser(eq(userId), any(UserUpdateRequest.class))).thenReturn(updatedUser);
     
         // Act and assert
         mockMvc.perform(put("/api/users/updateUser/{userId}", userId) 
                 .contentType(MediaType.APPLICATION_JSON)
-                .content("{\"id\": \"1\", \"email\": \"updated@example.com\", \"password\": \"2345678\"}"))
+                .content("{\"id\": \"1\", \"email\": \"updated@example.com\", \"password\": \"2345678\", \"role\": \"USER\", \"version\": 3}"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.email").value("updated@example.com"))
-                .andExpect(jsonPath("$.password").value("2345678"));
+                .andExpect(jsonPath("$.version").value(4))
+                .andExpect(jsonPath("$.password").doesNotExist());
+        verify(userService, never()).getUserByID(anyLong());
+    }
+
+    @Test
+    @WithMockUser(
+        value = "2",
+        authorities = {"ADMIN"})
+    void testPatchUser_StaleVersion() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        when(userService.updateUser(eq(userId), any(UserUpdateRequest.class)))
+            .thenThrow(new StaleUserVersionException("The user was changed in the meantime, reload it and try again."));
+
+        // Act and assert
+        mockMvc.perform(patch("/api/users/updateUser/{userId}", userId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"updated@example.com\", \"version\": 3}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @WithMockUser(
+        value = "2",
+        authorities = {"ADMIN"})
+    void testUpdateUser_WithoutVersion() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        UserResponse updatedUser = new UserResponse(userId, "updated@example.com", Role.USER, 4L);
+        when(userService.updateUser(eq(userId), any(UserUpdateRequest.class))).thenReturn(updatedUser);
+
+        // Act and assert: PUT keeps accepting bodies without a version, the update is then unconditional
+        mockMvc.perform(put("/api/users/updateUser/{userId}", userId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"email\": \"updated@example.com\", \"password\": \"2345678\", \"role\": \"USER\"}"))
+                .andExpect(status().isOk());
+        verify(userService).updateUser(eq(userId), argThat(request -> request.getVersion() == null));
+    }
+
+    @Test
+    @WithMockUser(
+        value = "2",
+        authorities = {"ADMIN"})
+    void testPatchUser_ShortPassword() throws Exception {
+        mockMvc.perform(patch("/api/users/updateUser/{userId}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"password\": \"short\", \"version\": 3}"))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).updateUser(anyLong(), any(UserUpdateRequest.class));
     }
     
     @Test
@@ -175,18 +238,19 @@ public class UserControllerTest {
         authorities = {"ADMIN"})
     void testDeleteUser_UserExists() throws Exception{
         Long userId = 1L;
-        User newUser = User.builder().id(userId).email("test@example.com").password("12345678").role(Role.USER).build();
-        when(userService.getUserByID(userId)).thenReturn(Optional.of(newUser));
-        doNothing().when(userService).deleteUser(userId);
+        UserResponse deletedUser = new UserResponse(userId, "test@example.com", Role.USER, 0L);
+        when(userService.deleteUser(userId)).thenReturn(Optional.of(deletedUser));
 
         mockMvc.perform(delete("/api/users/deleteUser/{userId}", userId))
-            .andExpect(status().isOk());
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.email").value("test@example.com"));
+        verify(userService, never()).getUserByID(anyLong());
     }
 
     @Test
     void testDeleteUser_UserNotFound() throws Exception{
         Long nonExistingUserId = 1L;
-        doThrow(EmptyResultDataAccessException.class).when(userService).deleteUser(nonExistingUserId);
+        when(userService.deleteUser(nonExistingUserId)).thenReturn(Optional.empty());
 
         mockMvc.perform(delete("/api/users/deleteUser/{userId}", nonExistingUserId))
             .andExpect(status().isNotFound());
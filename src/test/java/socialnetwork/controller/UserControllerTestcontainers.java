@@ -96,11 +96,11 @@ public class UserControllerTestcontainers {
         // Act and assert
         mockMvc.perform(get("/api/users/getAllUsers"))
             .andExpect(status().isOk())
-            .andExpect(jsonPath("$", hasSize(4)))  // $ of the json document
-            .andExpect(jsonPath("$[0].email").value(newUser1.getEmail()))
-            .andExpect(jsonPath("$[1].email").value("test2@example.com"))
-            .andExpect(jsonPath("$[2].password").value("12345678"))
-            .andExpect(jsonPath("$[3].role").value("USER"));
+            .andExpect(jsonPath("$.items", hasSize(4)))  // $ of the json document
+            .andExpect(jsonPath("$.items[0].email").value(newUser1.getEmail()))
+            .andExpect(jsonPath("$.items[1].email").value("test2@example.com"))
+            .andExpect(jsonPath("$.items[2].password").doesNotExist())
+            .andExpect(jsonPath("$.items[3].role").value("USER"));
 
     }
 
@@ -114,7 +114,7 @@ public class UserControllerTestcontainers {
         //Act and assert
         mockMvc.perform(get("/api/users/getAllUsers"))
         .andExpect(status().isOk())
-        .andExpect(jsonPath("$", hasSize(0)));
+        .andExpect(jsonPath("$.items", hasSize(0)));
     }
 
     @Test
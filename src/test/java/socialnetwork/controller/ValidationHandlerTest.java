@@ -0,0 +1,25 @@
+package socialnetwork.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import socialnetwork.exceptions.PasswordHashingUnavailableException;
+
+public class ValidationHandlerTest {
+
+    @Test
+    void testPasswordHashingUnavailable_Is503WithRetryAfter() {
+        ValidationHandler handler = new ValidationHandler();
+
+        ResponseEntity<Object> response = handler.handlePasswordHashingUnavailable(
+            new PasswordHashingUnavailableException("Too many password checks in progress, try again later."));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("Too many password checks in progress, try again later.", response.getBody());
+    }
+}
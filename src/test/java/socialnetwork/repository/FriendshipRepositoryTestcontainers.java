@@ -0,0 +1,85 @@
+package socialnetwork.repository;
+
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import socialnetwork.domain.Friendship;
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+
+// INSERT ... ON CONFLICT DO NOTHING RETURNING against a real PostgreSQL with the Flyway schema.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+public class FriendshipRepositoryTestcontainers {
+
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            "postgres:15-alpine");
+
+    @BeforeAll
+    static void beforeAll() {
+        postgres.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        postgres.stop();
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // the schema comes from the migrations only
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Test
+    void testInsertIfAbsent_StoresTheCanonicalPairOnce() {
+        //Arrange
+        User first = userRepository.saveAndFlush(User.builder().email("friend1@example.com").password("password").role(Role.USER).build());
+        User second = userRepository.saveAndFlush(User.builder().email("friend2@example.com").password("password").role(Role.USER).build());
+        //Act
+        Optional<Friendship> inserted = friendshipRepository.insertIfAbsent(second.getId(), first.getId());
+        //Assert
+        Assertions.assertThat(inserted).isPresent();
+        Assertions.assertThat(inserted.get().getId()).isNotNull();
+        Assertions.assertThat(inserted.get().getUserId1()).isEqualTo(first.getId());
+        Assertions.assertThat(inserted.get().getUserId2()).isEqualTo(second.getId());
+        Assertions.assertThat(inserted.get().getRequesterId()).isEqualTo(second.getId());
+        Assertions.assertThat(inserted.get().getStatus()).isEqualTo(Friendship.FriendshipStatus.PENDING);
+        Assertions.assertThat(inserted.get().getCreatedAt()).isNotNull();
+        // the same pair, in either order, is a conflict and returns nothing
+        Assertions.assertThat(friendshipRepository.insertIfAbsent(first.getId(), second.getId())).isEmpty();
+        Assertions.assertThat(friendshipRepository.insertIfAbsent(second.getId(), first.getId())).isEmpty();
+        Assertions.assertThat(friendshipRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void testInsertIfAbsent_MissingUserIsAForeignKeyViolation() {
+        //Arrange
+        User user = userRepository.saveAndFlush(User.builder().email("friend3@example.com").password("password").role(Role.USER).build());
+        //Act and assert
+        Assertions.assertThatThrownBy(() -> friendshipRepository.insertIfAbsent(user.getId(), user.getId() + 1_000_000))
+            .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
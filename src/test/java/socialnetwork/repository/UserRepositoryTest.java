@@ -67,4 +67,16 @@ public class UserRepositoryTest {
         Assertions.assertThat(foundUser).isPresent();
         Assertions.assertThat(userRepository.findByEmail(savedUser1.getEmail())).isEqualTo(Optional.ofNullable(savedUser1));
     }
+
+    @Test
+    void testFindByEmail_IgnoresCaseAndSpaces() {
+        //Arrange
+        User user = User.builder().email("User1@Example.com").password("password").role(Role.USER).build();
+        //Act
+        User savedUser = userRepository.save(user);
+        //Assert
+        Assertions.assertThat(savedUser.getNormalizedEmail()).isEqualTo("user1@example.com");
+        Assertions.assertThat(userRepository.findByEmail(" USER1@example.COM ")).contains(savedUser);
+        Assertions.assertThat(userRepository.findByEmail("user2@example.com")).isEmpty();
+    }
 }
@@ -0,0 +1,117 @@
+package socialnetwork.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+
+// The native RETURNING queries against a real PostgreSQL with the Flyway schema:
+// column aliases and projections behave differently there than on H2.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+public class UserRepositoryTestcontainers {
+
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            "postgres:15-alpine");
+
+    @BeforeAll
+    static void beforeAll() {
+        postgres.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        postgres.stop();
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // the schema comes from the migrations only
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testUpdateIfVersionMatches_ReturnsTokenVersion() {
+        //Arrange
+        User user = userRepository.saveAndFlush(User.builder().email("user1@example.com").password("password").role(Role.USER).build());
+        //Act
+        Optional<ReturnedUser> updated = userRepository.updateIfVersionMatches(user.getId(), user.getVersion(),
+            null, null, null, Role.ADMIN.name());
+        //Assert
+        Assertions.assertThat(updated).isPresent();
+        Assertions.assertThat(updated.get().getRole()).isEqualTo("ADMIN");
+        Assertions.assertThat(updated.get().getVersion()).isEqualTo(user.getVersion() + 1);
+        // read through the quoted alias: unquoted, PostgreSQL folds it to tokenversion and this is null
+        Assertions.assertThat(updated.get().getTokenVersion()).isEqualTo(1);
+        // a second update with the old version does not apply
+        Assertions.assertThat(userRepository.updateIfVersionMatches(user.getId(), user.getVersion(),
+            null, null, null, Role.USER.name())).isEmpty();
+    }
+
+    @Test
+    void testUpdateIfVersionMatches_NullVersionAlwaysApplies() {
+        //Arrange
+        User user = userRepository.saveAndFlush(User.builder().email("user5@example.com").password("password").role(Role.USER).build());
+        userRepository.updateIfVersionMatches(user.getId(), user.getVersion(), null, null, null, Role.ADMIN.name());
+        //Act
+        Optional<ReturnedUser> updated = userRepository.updateIfVersionMatches(user.getId(), null,
+            null, null, null, Role.MODERATOR.name());
+        //Assert
+        Assertions.assertThat(updated).isPresent();
+        Assertions.assertThat(updated.get().getRole()).isEqualTo("MODERATOR");
+        Assertions.assertThat(updated.get().getVersion()).isEqualTo(user.getVersion() + 2);
+        Assertions.assertThat(userRepository.updateIfVersionMatches(-1L, null, null, null, null, Role.USER.name())).isEmpty();
+    }
+
+    @Test
+    void testFindTokenVersionsChangedSince_OnlyRecentBumps() {
+        //Arrange
+        User changed = userRepository.saveAndFlush(User.builder().email("user3@example.com").password("password").role(Role.USER).build());
+        User unchanged = userRepository.saveAndFlush(User.builder().email("user4@example.com").password("password").role(Role.USER).build());
+        userRepository.incrementTokenVersion(changed.getId());
+        //Act
+        List<UserTokenVersion> recent = userRepository.findTokenVersionsChangedSince(LocalDateTime.now().minusHours(1));
+        //Assert
+        Assertions.assertThat(recent).extracting(UserTokenVersion::getId).contains(changed.getId()).doesNotContain(unchanged.getId());
+        Assertions.assertThat(recent).filteredOn(version -> version.getId().equals(changed.getId()))
+            .extracting(UserTokenVersion::getTokenVersion).containsExactly(1);
+        Assertions.assertThat(userRepository.findTokenVersionsChangedSince(LocalDateTime.now().plusHours(1))).isEmpty();
+    }
+
+    @Test
+    void testDeleteReturningById_ReturnsTokenVersionAndWritesTombstone() {
+        //Arrange
+        User user = userRepository.saveAndFlush(User.builder().email("user2@example.com").password("password").role(Role.USER).build());
+        userRepository.updateIfVersionMatches(user.getId(), user.getVersion(), null, null, null, Role.ADMIN.name());
+        //Act
+        Optional<ReturnedUser> deleted = userRepository.deleteReturningById(user.getId());
+        //Assert
+        Assertions.assertThat(deleted).isPresent();
+        Assertions.assertThat(deleted.get().getId()).isEqualTo(user.getId());
+        Assertions.assertThat(deleted.get().getTokenVersion()).isEqualTo(1);
+        Assertions.assertThat(userRepository.existsById(user.getId())).isFalse();
+        Assertions.assertThat(userRepository.findUserIdsDeletedSince(LocalDateTime.now().minusHours(1))).contains(user.getId());
+        Assertions.assertThat(userRepository.deleteReturningById(user.getId())).isEmpty();
+    }
+}
@@ -0,0 +1,68 @@
+package socialnetwork.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class FriendGraphIndexTest {
+
+    private FriendGraphIndex index;
+
+    @BeforeEach
+    void setup() {
+        // compacts after 4 changed users, so the tests also go through the merge
+        index = new FriendGraphIndex(true, 4, null, new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        // 1-2, 1-3, 2-3, 3-4
+        index.replace(new long[] {1, 1, 2, 3}, new long[] {2, 3, 3, 4}, 4);
+    }
+
+    @Test
+    void testFriendIds_SortedAndSymmetric() {
+        assertTrue(index.isReady());
+        assertArrayEquals(new long[] {2, 3}, index.friendIds(1));
+        assertArrayEquals(new long[] {1, 2, 4}, index.friendIds(3));
+        assertArrayEquals(new long[] {3}, index.friendIds(4));
+        assertArrayEquals(new long[0], index.friendIds(99));
+        assertEquals(3, index.degree(3));
+        assertTrue(index.areFriends(4, 3));
+        assertFalse(index.areFriends(1, 4));
+    }
+
+    @Test
+    void testOnFriendshipChanged_CreatedAndDeleted() {
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.CREATED, 4L, 1L));
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.DELETED, 2L, 3L));
+
+        assertArrayEquals(new long[] {2, 3, 4}, index.friendIds(1));
+        assertArrayEquals(new long[] {1}, index.friendIds(2));
+        assertArrayEquals(new long[] {1, 4}, index.friendIds(3));
+        assertTrue(index.areFriends(1, 4));
+        assertFalse(index.areFriends(3, 2));
+    }
+
+    @Test
+    void testOnFriendshipChanged_IsIdempotent() {
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.CREATED, 1L, 2L));
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.DELETED, 1L, 4L));
+
+        assertArrayEquals(new long[] {2, 3}, index.friendIds(1));
+        assertArrayEquals(new long[] {3}, index.friendIds(4));
+    }
+
+    @Test
+    void testOnFriendshipChanged_NewUserAndLastFriendRemoved() {
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.CREATED, 5L, 6L));
+        index.onFriendshipChanged(new FriendshipChangedEvent(FriendshipChangedEvent.Type.DELETED, 3L, 4L));
+        // the second change touched the fourth user and triggered a compaction
+
+        assertArrayEquals(new long[] {6}, index.friendIds(5));
+        assertArrayEquals(new long[0], index.friendIds(4));
+        assertEquals(0, index.degree(4));
+        assertArrayEquals(new long[] {1, 2}, index.friendIds(3));
+        assertArrayEquals(new long[] {2, 3}, index.friendIds(1));
+    }
+}
@@ -0,0 +1,92 @@
+package socialnetwork.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import socialnetwork.dto.FriendRecommendation;
+import socialnetwork.exceptions.RecommendationsUnavailableException;
+
+public class FriendRecommenderTest {
+
+    private FriendGraphIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new FriendGraphIndex(true, 10000, null, new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        // 1 is friends with 2, 3 and 4; 5 knows 2, 3 and 4; 6 knows 2 and 3; 7 knows 4; 2-3 are friends too
+        index.replace(
+            new long[] {1, 1, 1, 2, 3, 4, 2, 3, 4, 2},
+            new long[] {2, 3, 4, 5, 5, 5, 6, 6, 7, 3}, 10);
+    }
+
+    @Test
+    void testRecommend_RankedByMutualFriends() {
+        FriendRecommender recommender = new FriendRecommender(index, 1000, 1000, Long.MAX_VALUE);
+
+        List<FriendRecommendation> recommendations = recommender.recommend(1, 10);
+
+        // friends (2, 3, 4) and the user itself are never suggested
+        assertEquals(List.of(
+            new FriendRecommendation(5, 3),
+            new FriendRecommendation(6, 2),
+            new FriendRecommendation(7, 1)), recommendations);
+    }
+
+    @Test
+    void testRecommend_KeepsOnlyTheBestAndLowerIdOnTies() {
+        FriendRecommender recommender = new FriendRecommender(index, 1000, 1000, Long.MAX_VALUE);
+
+        // 6 has 2 and 3 as friends, 1 and 5 share both of them
+        assertEquals(List.of(new FriendRecommendation(1, 2)), recommender.recommend(6, 1));
+    }
+
+    @Test
+    void testRecommend_ParallelGivesTheSameResult() {
+        FriendRecommender sequential = new FriendRecommender(index, 1000, 1000, Long.MAX_VALUE);
+        FriendRecommender parallel = new FriendRecommender(index, 1000, 1000, 0);
+
+        for (long userId = 1; userId <= 8; userId++) {
+            assertEquals(sequential.recommend(userId, 10), parallel.recommend(userId, 10));
+        }
+    }
+
+    @Test
+    void testRecommend_UserWithoutFriends() {
+        FriendRecommender recommender = new FriendRecommender(index, 1000, 1000, Long.MAX_VALUE);
+
+        assertTrue(recommender.recommend(99, 10).isEmpty());
+    }
+
+    @Test
+    void testRecommend_IndexNotLoaded() {
+        FriendGraphIndex notLoaded = new FriendGraphIndex(true, 10000, null, new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        FriendRecommender recommender = new FriendRecommender(notLoaded, 1000, 1000, Long.MAX_VALUE);
+
+        assertThrows(RecommendationsUnavailableException.class, () -> recommender.recommend(1, 10));
+    }
+
+    @Test
+    void testLongIntCounter_KeepsCountsWhenGrowing() {
+        FriendRecommender.LongIntCounter counter = new FriendRecommender.LongIntCounter(1);
+        for (long key = 1; key <= 1000; key++) {
+            for (int i = 0; i < key % 3 + 1; i++) {
+                counter.increment(key * 1_000_003);
+            }
+        }
+
+        long[] total = new long[2];
+        counter.forEach((key, count) -> {
+            assertEquals(key / 1_000_003 % 3 + 1, count);
+            total[0]++;
+            total[1] += count;
+        });
+        assertEquals(1000, total[0]);
+        assertEquals(2000, total[1]);
+    }
+}
@@ -0,0 +1,41 @@
+package socialnetwork.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+
+public class SortedIntersectionTest {
+
+    @Test
+    void testIntersect_SimilarSizes() {
+        long[] friends1 = {1, 3, 5, 7, 9};
+        long[] friends2 = {2, 3, 4, 7, 10};
+
+        assertArrayEquals(new long[] {3, 7}, SortedIntersection.intersect(friends1, 0, 5, friends2, 0, 5));
+        assertEquals(2, SortedIntersection.count(friends1, 0, 5, friends2, 0, 5));
+    }
+
+    @Test
+    void testIntersect_RespectsRanges() {
+        long[] neighbours = {1, 2, 3, 4, 5, 6};
+
+        assertArrayEquals(new long[] {3, 4}, SortedIntersection.intersect(neighbours, 0, 4, neighbours, 2, 6));
+    }
+
+    @Test
+    void testIntersect_GallopsWhenSizesDiffer() {
+        long[] small = {0, 999, 1000, 5001, 70000};
+        long[] large = LongStream.range(0, 10_000).map(i -> i * 5).toArray();
+
+        assertArrayEquals(new long[] {0, 1000}, SortedIntersection.intersect(small, 0, 5, large, 0, large.length));
+        assertEquals(2, SortedIntersection.count(large, 0, large.length, small, 0, 5));
+    }
+
+    @Test
+    void testIntersect_Empty() {
+        assertArrayEquals(new long[0], SortedIntersection.intersect(new long[0], 0, 0, new long[] {1}, 0, 1));
+        assertEquals(0, SortedIntersection.count(new long[] {1, 2}, 0, 2, new long[] {3, 4}, 0, 2));
+    }
+}
@@ -0,0 +1,94 @@
+package socialnetwork.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import socialnetwork.domain.Role;
+import socialnetwork.dto.UserResponse;
+
+public class UserCacheTest {
+
+    private UserCache userCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setup() {
+        userCache = new UserCache(true, 100, Duration.ofMinutes(10), Duration.ofSeconds(5),
+            new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void testGetById_LoadsOnceAndFillsEmailKey() {
+        UserResponse user = new UserResponse(1L, "user1@example.com", Role.USER, 0L);
+
+        userCache.getById(1L, id -> load(user));
+        userCache.getById(1L, id -> load(user));
+        Optional<UserResponse> byEmail = userCache.getByEmail("user1@example.com", email -> load(null));
+
+        assertEquals(1, loads.get());
+        assertEquals(Optional.of(user), byEmail);
+    }
+
+    @Test
+    void testMissesAreCached() {
+        userCache.getById(1L, id -> load(null));
+        Optional<UserResponse> result = userCache.getById(1L, id -> load(null));
+
+        assertTrue(result.isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testUserChangedEvent_EvictsBothKeys() {
+        UserResponse user = new UserResponse(1L, "user1@example.com", Role.USER, 0L);
+        userCache.getById(1L, id -> load(user));
+
+        // the delete event only carries the id, the email entry must go as well
+        userCache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.DELETED, 1L, null, null));
+        userCache.getById(1L, id -> load(null));
+        userCache.getByEmail("user1@example.com", email -> load(null));
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testUserChangedEvent_EmailChangeEvictsTheOldEmail() {
+        UserResponse user = new UserResponse(1L, "user1@example.com", Role.USER, 0L);
+        UserResponse other = new UserResponse(2L, "user2@example.com", Role.USER, 0L);
+        userCache.getByEmail("user1@example.com", email -> load(user));
+        userCache.getByEmail("user2@example.com", email -> load(other));
+
+        // the update event carries the new email only
+        userCache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "renamed@example.com", 1));
+        userCache.getByEmail("USER1@example.com", email -> load(null));
+        userCache.getByEmail("user2@example.com", email -> load(null));
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testInvalidateAll() {
+        UserResponse user = new UserResponse(1L, "user1@example.com", Role.USER, 0L);
+        userCache.getById(1L, id -> load(user));
+
+        userCache.invalidateAll();
+        userCache.getById(1L, id -> load(user));
+        userCache.getByEmail("user1@example.com", email -> load(user));
+
+        assertEquals(2, loads.get());
+    }
+
+    private Optional<UserResponse> load(UserResponse user) {
+        loads.incrementAndGet();
+        return Optional.ofNullable(user);
+    }
+}
@@ -0,0 +1,59 @@
+package socialnetwork.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.exceptions.InvalidImportException;
+
+public class UserImportServiceTest {
+
+    @Test
+    void testCsvRowParser_ColumnsInAnyOrderAndRoleOptional() {
+        UserImportService.CsvRowParser parser = new UserImportService.CsvRowParser(" Password ,EMAIL");
+
+        User user = parser.parse("secret1, a1@example.com ");
+
+        assertEquals("a1@example.com", user.getEmail());
+        assertEquals("secret1", user.getPassword());
+        assertEquals(Role.USER, user.getRole());
+    }
+
+    @Test
+    void testCsvRowParser_QuotedFieldsWithCommasQuotesAndNewlines() {
+        UserImportService.CsvRowParser parser = new UserImportService.CsvRowParser("email,password,role");
+
+        User user = parser.parse("\"a2@example.com\",\"p,a\"\"ss\nword\",\"admin\"");
+
+        assertEquals("a2@example.com", user.getEmail());
+        assertEquals("p,a\"ss\nword", user.getPassword());
+        assertEquals(Role.ADMIN, user.getRole());
+    }
+
+    @Test
+    void testCsvRowParser_RejectsBadRows() {
+        UserImportService.CsvRowParser parser = new UserImportService.CsvRowParser("email,password,role");
+
+        InvalidImportException missing = assertThrows(InvalidImportException.class, () -> parser.parse("a3@example.com,secret"));
+        assertEquals("expected 3 columns, found 2", missing.getMessage());
+        InvalidImportException unterminated = assertThrows(InvalidImportException.class, () -> parser.parse("a3@example.com,\"secret,USER"));
+        assertEquals("unterminated quoted field", unterminated.getMessage());
+        InvalidImportException role = assertThrows(InvalidImportException.class, () -> parser.parse("a3@example.com,secret,ROOT"));
+        assertTrue(role.getMessage().startsWith("role: must be one of"));
+    }
+
+    @Test
+    void testCsvRowParser_HeaderMustNameEmailAndPassword() {
+        assertThrows(InvalidImportException.class, () -> new UserImportService.CsvRowParser("email,role"));
+        assertThrows(InvalidImportException.class, () -> new UserImportService.CsvRowParser(null));
+    }
+
+    @Test
+    void testHasOpenQuote_CountsDoubledQuotesAsClosed() {
+        assertFalse(UserImportService.CsvRowParser.hasOpenQuote("a@example.com,\"pass\"\"word\""));
+        assertTrue(UserImportService.CsvRowParser.hasOpenQuote("a@example.com,\"pass"));
+        assertFalse(UserImportService.CsvRowParser.hasOpenQuote("a@example.com,password"));
+    }
+}
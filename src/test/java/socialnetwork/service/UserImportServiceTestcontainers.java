@@ -0,0 +1,123 @@
+package socialnetwork.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import socialnetwork.domain.Role;
+import socialnetwork.domain.User;
+import socialnetwork.dto.UserImportReject;
+import socialnetwork.dto.UserImportResult;
+import socialnetwork.repository.FriendshipRepository;
+import socialnetwork.repository.UserRepository;
+
+// The whole import against a real PostgreSQL: COPY into the staging table and the ON CONFLICT merge.
+@SpringBootTest
+@Testcontainers
+public class UserImportServiceTestcontainers {
+
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(
+            "postgres:15-alpine");
+
+    @BeforeAll
+    static void beforeAll() {
+        postgres.start();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        postgres.stop();
+    }
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FriendshipRepository friendshipRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setup() {
+        friendshipRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testImportUsers_Csv_MergesAndReportsRejects() throws Exception {
+        //Arrange
+        userRepository.save(User.builder().email("taken@example.com").password("password").role(Role.USER).build());
+        String csv = """
+            email,password,role
+            new1@example.com,secret1,USER
+            "new2@example.com","multi
+            line, pass",admin
+            taken@example.com,secret3,USER
+            NEW1@example.com,secret4,USER
+            not-an-email,secret5,USER
+            new3@example.com,secret6,ROOT
+            """;
+        //Act
+        UserImportResult result = userImportService.importUsers(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), UserImportService.Format.CSV);
+        //Assert
+        Assertions.assertThat(result.getReceived()).isEqualTo(7);
+        Assertions.assertThat(result.getImported()).isEqualTo(2);
+        Assertions.assertThat(result.getRejected()).isEqualTo(5);
+        // the quoted password spans lines 3 and 4, so the lines after it are numbered from 5
+        Assertions.assertThat(result.getRejects())
+            .extracting(UserImportReject::line, UserImportReject::reason)
+            .containsExactlyInAnyOrder(
+                Assertions.tuple(5L, "email already exists"),
+                Assertions.tuple(6L, "duplicate email in upload"),
+                Assertions.tuple(7L, "email: must be a well-formed email address"),
+                Assertions.tuple(8L, "role: must be one of [USER, MODERATOR, ADMIN]"));
+
+        User multiLine = userRepository.findByEmail("new2@example.com").orElseThrow();
+        Assertions.assertThat(multiLine.getRole()).isEqualTo(Role.ADMIN);
+        Assertions.assertThat(passwordEncoder.matches("multi\nline, pass", multiLine.getPassword())).isTrue();
+        Assertions.assertThat(userRepository.findByEmail("new1@example.com")).isPresent();
+        Assertions.assertThat(userRepository.findByEmail("new3@example.com")).isEmpty();
+        Assertions.assertThat(userRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void testImportUsers_Ndjson() throws Exception {
+        //Arrange
+        String ndjson = """
+            {"email": "json1@example.com", "password": "secret1"}
+            {"email": "json2@example.com", "password": "secret2", "role": "ADMIN"}
+            not json
+            """;
+        //Act
+        UserImportResult result = userImportService.importUsers(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), UserImportService.Format.NDJSON);
+        //Assert
+        Assertions.assertThat(result.getImported()).isEqualTo(2);
+        Assertions.assertThat(result.getRejects()).containsExactly(new UserImportReject(3, null, "malformed JSON"));
+        Assertions.assertThat(userRepository.findByEmail("json2@example.com").orElseThrow().getRole()).isEqualTo(Role.ADMIN);
+    }
+}
@@ -3,7 +3,6 @@ package socialnetwork.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -14,16 +13,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import socialnetwork.domain.Friendship;
 import socialnetwork.domain.Role;
 import socialnetwork.domain.User;
+import socialnetwork.dto.UserPage;
+import socialnetwork.dto.UserResponse;
+import socialnetwork.dto.UserUpdateRequest;
 import socialnetwork.exceptions.ExistingFriendshipException;
+import socialnetwork.exceptions.InvalidCursorException;
 import socialnetwork.exceptions.SameUserFriendshipException;
+import socialnetwork.exceptions.StaleUserVersionException;
 import socialnetwork.exceptions.UserNotFoundException;
 import socialnetwork.repository.FriendshipRepository;
+import socialnetwork.repository.ReturnedUser;
 import socialnetwork.repository.UserRepository;
 
+import java.sql.SQLException;
 import java.util.List;
 import java.util.Arrays;
 
@@ -40,6 +50,12 @@ public class UserServiceTest {
     @Mock
     private FriendshipRepository friendshipRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
     @InjectMocks
     private UserService userService;
 
@@ -65,13 +81,81 @@ public class UserServiceTest {
     void testDeleteUser_UserFound() {
         // Arrange
         Long userId = 1L;
+        when(userRepository.deleteReturningById(userId)).thenReturn(Optional.of(returnedUser(userId, "user1@example.com", "USER", 0L, 0)));
+
+        // Act
+        Optional<UserResponse> deletedUser = userService.deleteUser(userId);
+
+        // Assert
+        // the user comes back from the DELETE itself, nothing is read before
+        assertEquals(Optional.of(new UserResponse(userId, "user1@example.com", Role.USER, 0L)), deletedUser);
+        verify(userRepository, never()).findById(anyLong());
+        verify(eventPublisher, times(1)).publishEvent(any(UserChangedEvent.class));
+    }
+
+    @Test
+    void testDeleteUser_NothingDeleted() {
+        // Arrange
+        Long userId = 1L;
+        when(userRepository.deleteReturningById(userId)).thenReturn(Optional.empty());
 
         // Act
-        userService.deleteUser(userId);
+        Optional<UserResponse> deletedUser = userService.deleteUser(userId);
 
         // Assert
-        // Verify that the deleteById method was called with the correct user ID
-        verify(userRepository, times(1)).deleteById(eq(userId));
+        assertTrue(deletedUser.isEmpty());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testUpdateUser_IncrementsTokenVersion() {
+        // Arrange
+        UserUpdateRequest request = UserUpdateRequest.builder().version(2L).email("User1@example.com").password("password").build();
+        ReturnedUser updated = returnedUser(1L, "User1@example.com", "ADMIN", 3L, 3);
+        when(passwordEncoder.encode("password")).thenReturn("hash");
+        when(userRepository.updateIfVersionMatches(1L, 2L, "User1@example.com", "user1@example.com", "hash", null))
+            .thenReturn(Optional.of(updated));
+
+        // Act
+        UserResponse updatedUser = userService.updateUser(1L, request);
+
+        // Assert
+        assertEquals(new UserResponse(1L, "User1@example.com", Role.ADMIN, 3L), updatedUser);
+        verify(userRepository, never()).findById(anyLong());
+        verify(eventPublisher, times(1)).publishEvent(any(UserChangedEvent.class));
+    }
+
+    @Test
+    void testUpdateUser_StaleVersion() {
+        // Arrange
+        UserUpdateRequest request = UserUpdateRequest.builder().version(1L).role(Role.ADMIN).build();
+        when(userRepository.updateIfVersionMatches(1L, 1L, null, null, null, "ADMIN")).thenReturn(Optional.empty());
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        // Act and Assert
+        assertThrows(StaleUserVersionException.class, () -> userService.updateUser(1L, request));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testUpdateUser_UserNotFound() {
+        // Arrange
+        UserUpdateRequest request = UserUpdateRequest.builder().version(1L).role(Role.ADMIN).build();
+        when(userRepository.updateIfVersionMatches(1L, 1L, null, null, null, "ADMIN")).thenReturn(Optional.empty());
+        when(userRepository.existsById(1L)).thenReturn(false);
+
+        // Act and Assert
+        assertThrows(UserNotFoundException.class, () -> userService.updateUser(1L, request));
+    }
+
+    private static ReturnedUser returnedUser(Long id, String email, String role, Long version, Integer tokenVersion) {
+        return new ReturnedUser() {
+            public Long getId() { return id; }
+            public String getEmail() { return email; }
+            public String getRole() { return role; }
+            public Long getVersion() { return version; }
+            public Integer getTokenVersion() { return tokenVersion; }
+        };
     }
 
     // @Test
@@ -92,37 +176,53 @@ public class UserServiceTest {
     // }
     
     @Test
-    void testGetAllUsers() {
+    void testGetUsersPage() {
         // Arrange
-        User newUser1 = User.builder().email("user1@example.com").password("password").role(Role.USER).build();
-        User newUser2 = User.builder().email("user2@example.com").password("password").role(Role.USER).build();
-        List<User> userList = Arrays.asList(newUser1, newUser2);
-        when(userRepository.findAll()).thenReturn(userList);
+        UserResponse newUser1 = new UserResponse(1L, "user1@example.com", Role.USER, 0L);
+        UserResponse newUser2 = new UserResponse(2L, "user2@example.com", Role.USER, 0L);
+        UserResponse newUser3 = new UserResponse(3L, "user3@example.com", Role.USER, 0L);
+        List<UserResponse> userList = Arrays.asList(newUser1, newUser2, newUser3);
+        when(userRepository.findUserResponsesByIdGreaterThanOrderByIdAsc(0L, Limit.of(3))).thenReturn(userList);
         // Act
-        List<User> resultUserList = userService.getAllUsers();
+        UserPage<UserResponse> page = userService.getUsersPage(null, 2, false);
 
         // Assert
-        assertNotNull(resultUserList);
-        assertEquals(2, resultUserList.size());
-        assertEquals(newUser1, resultUserList.get(0));
-        assertEquals(newUser2, resultUserList.get(1));
+        assertNotNull(page);
+        assertEquals(2, page.getItems().size());
+        assertEquals(newUser1, page.getItems().get(0));
+        assertEquals(newUser2, page.getItems().get(1));
+        assertNotNull(page.getNextCursor());
+        assertNull(page.getEstimatedTotal());
+
+        // the cursor points right after the last user of the page
+        when(userRepository.findUserResponsesByIdGreaterThanOrderByIdAsc(2L, Limit.of(3))).thenReturn(List.of(newUser3));
+        UserPage<UserResponse> nextPage = userService.getUsersPage(page.getNextCursor(), 2, false);
+        assertEquals(List.of(newUser3), nextPage.getItems());
+        assertNull(nextPage.getNextCursor());
+    }
 
-        verify(userRepository, times(1)).findAll();
-        
+    @Test
+    void testGetUsersPage_InvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> userService.getUsersPage("not a cursor", 2, false));
+        verify(userRepository, never()).findUserResponsesByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
     }
     
     @Test
     void testCreateFriendship_Succes() {
         // Arrange
-        Long userId1 = 1L;
-        Long userId2 = 2L;
-        when(userRepository.existsByBothUsers(userId1, userId2)).thenReturn(true);
-        when(friendshipRepository.existsByBothUserIds(userId1, userId2)).thenReturn(false);
+        Long userId1 = 2L;
+        Long userId2 = 1L;
+        when(friendshipRepository.insertIfAbsent(userId1, userId2)).thenReturn(Optional.of(new Friendship(userId1, userId2)));
         // Act
         Optional<Friendship> friendshipResult = userService.createFriendship(userId1, userId2);
         //Assert
         assertTrue(friendshipResult.isPresent());
-        verify(friendshipRepository, times(1)).save(any(Friendship.class));
+        assertEquals(1L, friendshipResult.get().getUserId1());
+        assertEquals(2L, friendshipResult.get().getRequesterId());
+        // one statement: nothing is checked before the insert
+        verify(userRepository, never()).existsByBothUsers(anyLong(), anyLong());
+        verify(friendshipRepository, never()).existsByBothUserIds(anyLong(), anyLong());
+        verify(eventPublisher, times(1)).publishEvent(any(FriendshipChangedEvent.class));
     }
 
     @Test
@@ -131,9 +231,8 @@ public class UserServiceTest {
         Long userId = 1L;
         // Act and Assert
         assertThrows(SameUserFriendshipException.class, () -> userService.createFriendship(userId, userId));
-        verify(userRepository, never()).existsByBothUsers(anyLong(), anyLong());
-        verify(friendshipRepository, never()).existsByBothUserIds(anyLong(), anyLong());
-        //the exists method are never called because we arrange the method to throw an exception
+        verify(friendshipRepository, never()).insertIfAbsent(anyLong(), anyLong());
+        //the insert is never run because we arrange the method to throw an exception
         // so the normal flow is interrupted
     }
 
@@ -142,11 +241,10 @@ public class UserServiceTest {
         //Arrange
         Long userId1 = 1L;
         Long userId2 = 2L;
-        when(userRepository.existsByBothUsers(userId1, userId2)).thenReturn(true);
-        when(friendshipRepository.existsByBothUserIds(userId1, userId2)).thenReturn(true);
+        when(friendshipRepository.insertIfAbsent(userId1, userId2)).thenReturn(Optional.empty());
         //Act and assert
         assertThrows(ExistingFriendshipException.class, ()->userService.createFriendship(userId1, userId2)); //using lambda instead of ceating another method to execute
-        verify(friendshipRepository, times(1)).existsByBothUserIds(userId1, userId2);
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -154,10 +252,11 @@ public class UserServiceTest {
         //Arrange
         Long userId1 = 1L;
         Long userId2 = 2L;
-        when (userRepository.existsByBothUsers(userId1, userId2)).thenReturn(false);
+        SQLException foreignKeyViolation = new SQLException("insert or update on table \"friendship\" violates foreign key constraint", "23503");
+        when(friendshipRepository.insertIfAbsent(userId1, userId2))
+            .thenThrow(new DataIntegrityViolationException("could not execute statement", foreignKeyViolation));
         //Act and Assert
         assertThrows(UserNotFoundException.class, ()->userService.createFriendship(userId1, userId2));
-        verify(friendshipRepository, never()).existsByBothUserIds(anyLong(), anyLong());
     }
 
 